@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.benchmark;
+
+import fish.payara.micro.BootstrapException;
+import fish.payara.micro.PayaraMicroRuntime;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Common settings of benchmarks, which are given as system properties.
+ * <ul>
+ *     <li>{@code payara.benchmark.war} - war file to be deployed</li>
+ *     <li>{@code payara.benchmark.httpPort} - http port of payara-micro(default 18080)</li>
+ *     <li>{@code payara.benchmark.stopPort} - port of StopServer(default 15050)</li>
+ * </ul>
+ */
+final class BenchmarkSupport {
+
+    static final String STOP_COMMAND = "stop";
+
+    private BenchmarkSupport() {
+    }
+
+    static int httpPort() {
+        return Integer.getInteger("payara.benchmark.httpPort", 18080);
+    }
+
+    static int stopPort() {
+        return Integer.getInteger("payara.benchmark.stopPort", 15050);
+    }
+
+    static File war() {
+        String path = System.getProperty("payara.benchmark.war");
+        if (path == null || !new File(path).isFile()) {
+            throw new IllegalStateException("System property payara.benchmark.war should point a war file.");
+        }
+        return new File(path);
+    }
+
+    static AlternativePayaraMicro payaraMicro(boolean noCluster) throws IOException {
+        File rootDir = Files.createTempDirectory("payara-benchmark").toFile();
+        return AlternativePayaraMicro.getInstance()
+                .setRootDir(rootDir)
+                .setHttpPort(httpPort())
+                .setNoCluster(noCluster);
+    }
+
+    static PayaraMicroRuntime boot(boolean noCluster, File... deployments) throws IOException, BootstrapException {
+        AlternativePayaraMicro payaraMicro = payaraMicro(noCluster);
+        for (File deployment : deployments) {
+            payaraMicro.addDeploymentFile(deployment);
+        }
+        return payaraMicro.bootStrap();
+    }
+}
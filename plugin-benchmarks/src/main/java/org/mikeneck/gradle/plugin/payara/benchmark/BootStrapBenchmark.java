@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.benchmark;
+
+import fish.payara.micro.BootstrapException;
+import fish.payara.micro.PayaraMicroRuntime;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold boot of {@link AlternativePayaraMicro#bootStrap()}.
+ * Payara-micro can boot only once in a JVM, so every measurement runs in a fresh fork.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(5)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class BootStrapBenchmark {
+
+    @Param({"false", "true"})
+    public boolean noCluster;
+
+    private AlternativePayaraMicro payaraMicro;
+
+    private PayaraMicroRuntime runtime;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payaraMicro = BenchmarkSupport.payaraMicro(noCluster);
+    }
+
+    @Benchmark
+    public PayaraMicroRuntime bootStrap() throws BootstrapException {
+        runtime = payaraMicro.bootStrap();
+        return runtime;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws BootstrapException {
+        if (runtime != null) {
+            runtime.shutdown();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.benchmark;
+
+import fish.payara.micro.BootstrapException;
+import fish.payara.micro.PayaraMicroRuntime;
+import org.glassfish.embeddable.GlassFishException;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deploy latency of a single war on running payara-micro.
+ * The war is undeployed before each invocation,
+ * so that {@link AlternativePayaraMicro#redeploy(File)} takes the same deploy path as deployAll.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class DeployBenchmark {
+
+    @Param({"false", "true"})
+    public boolean noCluster;
+
+    private File war;
+
+    private PayaraMicroRuntime runtime;
+
+    private AlternativePayaraMicro payaraMicro;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, BootstrapException {
+        war = BenchmarkSupport.war();
+        runtime = BenchmarkSupport.boot(noCluster);
+        payaraMicro = AlternativePayaraMicro.getInstance(false);
+    }
+
+    @Setup(Level.Invocation)
+    public void undeploy() throws GlassFishException {
+        payaraMicro.undeploy(war);
+    }
+
+    @Benchmark
+    public String deploy() throws GlassFishException {
+        return payaraMicro.redeploy(war);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws BootstrapException {
+        runtime.shutdown();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.benchmark;
+
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.server.ControlClient;
+import org.mikeneck.gradle.plugin.payara.server.LifecycleState;
+import org.mikeneck.gradle.plugin.payara.server.PayaraMicroServer;
+import org.mikeneck.gradle.plugin.payara.server.StopServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs payara-micro with {@link StopServer} and stops it through {@link ControlClient} repeatedly in one JVM, as {@code payaraRunWar}
+ * and {@code payaraStop} do in a gradle daemon, and fails if retained heap or live threads grow over cycles.
+ * <p>
+ * Arguments are number of cycles(default 10) and number of warmup cycles excluded from the baseline(default 2).
+ * In addition to {@link BenchmarkSupport} properties,
+ * <ul>
+ *     <li>{@code payara.leak.heapToleranceMb} - allowed growth of heap used after GC from the baseline(default 32)</li>
+ *     <li>{@code payara.leak.threadTolerance} - allowed growth of live threads from the baseline(default 2)</li>
+ *     <li>{@code payara.leak.reuseRuntime} - keep pooled GlassFishRuntime between cycles instead of {@link AlternativePayaraMicro#reset()}(default false)</li>
+ * </ul>
+ */
+public final class LifecycleLeakCheck {
+
+    private static final long READY_TIMEOUT = 300L;
+
+    private static final long STOP_TIMEOUT = 60L;
+
+    private static final int GC_ROUNDS = 5;
+
+    private static final long KB = 1024L;
+
+    private LifecycleLeakCheck() {
+    }
+
+    public static void main(String[] args) {
+        int status;
+        try {
+            status = check(args) ? 0 : 1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 2;
+        }
+        // payara-micro left by a failed cycle should not keep this JVM alive
+        System.exit(status);
+    }
+
+    /**
+     * @return {@code true} if neither retained heap nor live threads grew over tolerances.
+     */
+    private static boolean check(String[] args) throws IOException, InterruptedException {
+        int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        if (cycles <= warmup) {
+            throw new IllegalArgumentException(String.format("cycles(%d) should be greater than warmup cycles(%d).", cycles, warmup));
+        }
+        long heapToleranceKb = Long.getLong("payara.leak.heapToleranceMb", 32L) * KB;
+        int threadTolerance = Integer.getInteger("payara.leak.threadTolerance", 2);
+        boolean reuseRuntime = Boolean.getBoolean("payara.leak.reuseRuntime");
+        File war = BenchmarkSupport.war();
+
+        long baselineKb = -1L;
+        int baselineThreads = -1;
+        long heapKb = 0L;
+        int threads = 0;
+        System.out.println("cycle,heapUsedKb,threads");
+        for (int cycle = 1; cycle <= cycles; cycle++) {
+            runCycle(war);
+            if (!reuseRuntime) {
+                AlternativePayaraMicro.reset();
+            }
+            heapKb = retainedHeapKb();
+            threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            System.out.println(cycle + "," + heapKb + "," + threads);
+            if (cycle == warmup + 1) {
+                baselineKb = heapKb;
+                baselineThreads = threads;
+            }
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        System.out.println(String.format("Retained heap %d KB(%+d KB from cycle %d), live threads %d(%+d), peak threads %d.",
+                heapKb, heapKb - baselineKb, warmup + 1, threads, threads - baselineThreads, threadBean.getPeakThreadCount()));
+        boolean failed = false;
+        if (heapKb - baselineKb > heapToleranceKb) {
+            System.err.println(String.format("Retained heap grew %d KB over %d cycles, more than %d KB.", heapKb - baselineKb, cycles - warmup - 1, heapToleranceKb));
+            failed = true;
+        }
+        if (threads - baselineThreads > threadTolerance) {
+            System.err.println(String.format("Live threads grew by %d over %d cycles, more than %d.", threads - baselineThreads, cycles - warmup - 1, threadTolerance));
+            failed = true;
+        }
+        return !failed;
+    }
+
+    private static void runCycle(final File war) throws IOException, InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        PayaraMicroServer server = new PayaraMicroServer(latch) {
+            @Override
+            protected AlternativePayaraMicro createPayaraMicro() {
+                try {
+                    return BenchmarkSupport.payaraMicro(true).addDeploymentFile(war);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        StopServer stopServer = new StopServer(BenchmarkSupport.stopPort(), BenchmarkSupport.STOP_COMMAND, latch, "leak-check", server);
+        ExecutorService executors = Executors.newFixedThreadPool(2);
+        executors.submit(server);
+        executors.submit(stopServer);
+        executors.shutdown();
+        try {
+            LifecycleState state = server.getLifecycle().await(READY_TIMEOUT, TimeUnit.SECONDS, LifecycleState.READY);
+            if (state != LifecycleState.READY) {
+                throw new IllegalStateException("payara-micro is not ready: " + state, server.getLifecycle().getFailure());
+            }
+            new ControlClient(BenchmarkSupport.stopPort(), BenchmarkSupport.STOP_COMMAND).stop();
+            state = server.getLifecycle().await(STOP_TIMEOUT, TimeUnit.SECONDS, LifecycleState.STOPPED);
+            if (state != LifecycleState.STOPPED) {
+                throw new IllegalStateException("payara-micro is not stopped: " + state, server.getLifecycle().getFailure());
+            }
+        } finally {
+            latch.countDown();
+            try {
+                stopServer.close();
+            } catch (Exception e) {
+                System.err.println("Fail to close StopServer: " + e.getMessage());
+            }
+        }
+        if (!executors.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Threads running payara-micro and StopServer did not finish.");
+        }
+    }
+
+    private static long retainedHeapKb() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // take the lowest of several full GCs, finalizers may release more on later rounds
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(100L);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used / KB;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.benchmark;
+
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.server.ControlClient;
+import org.mikeneck.gradle.plugin.payara.server.LifecycleState;
+import org.mikeneck.gradle.plugin.payara.server.PayaraMicroServer;
+import org.mikeneck.gradle.plugin.payara.server.StopServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots payara-micro, stops it through {@link ControlClient} with draining, and boots it again from the same instance root,
+ * as {@code payaraRunWar} followed by {@code payaraStop} and {@code payaraRunWar} do. Fails unless both boots serve HTTP.
+ * <p>
+ * An argument is drain timeout in seconds(default 5). {@link BenchmarkSupport} properties are used.
+ */
+public final class RestartCheck {
+
+    private static final long READY_TIMEOUT = 300L;
+
+    private static final long STOP_TIMEOUT = 60L;
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private RestartCheck() {
+    }
+
+    public static void main(String[] args) {
+        int status;
+        try {
+            status = check(args) ? 0 : 1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 2;
+        }
+        System.exit(status);
+    }
+
+    private static boolean check(String[] args) throws IOException, InterruptedException {
+        long drainTimeout = TimeUnit.SECONDS.toMillis(args.length > 0 ? Long.parseLong(args[0]) : 5L);
+        File war = BenchmarkSupport.war();
+        File rootDir = Files.createTempDirectory("payara-restart-check").toFile();
+        boolean served = true;
+        for (int boot = 1; boot <= 2; boot++) {
+            int status = runCycle(war, rootDir, drainTimeout);
+            System.out.println(String.format("Boot %d answered HTTP status %d on port %d.", boot, status, BenchmarkSupport.httpPort()));
+            if (status < 0) {
+                System.err.println(String.format("Boot %d from %s does not serve HTTP.", boot, rootDir));
+                served = false;
+            }
+        }
+        return served;
+    }
+
+    /**
+     * @return HTTP status answered while payara-micro is ready, or {@code -1} if it doesn't answer.
+     */
+    private static int runCycle(final File war, final File rootDir, long drainTimeout) throws IOException, InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        PayaraMicroServer server = new PayaraMicroServer(latch) {
+            @Override
+            protected AlternativePayaraMicro createPayaraMicro() {
+                return AlternativePayaraMicro.getInstance()
+                        .setRootDir(rootDir)
+                        .setHttpPort(BenchmarkSupport.httpPort())
+                        .setNoCluster(true)
+                        .addDeploymentFile(war);
+            }
+        };
+        server.setDrainTimeout(drainTimeout);
+        StopServer stopServer = new StopServer(BenchmarkSupport.stopPort(), BenchmarkSupport.STOP_COMMAND, latch, "restart-check", server);
+        ExecutorService executors = Executors.newFixedThreadPool(2);
+        executors.submit(server);
+        executors.submit(stopServer);
+        executors.shutdown();
+        int status;
+        try {
+            LifecycleState state = server.getLifecycle().await(READY_TIMEOUT, TimeUnit.SECONDS, LifecycleState.READY);
+            if (state != LifecycleState.READY) {
+                throw new IllegalStateException("payara-micro is not ready: " + state, server.getLifecycle().getFailure());
+            }
+            status = httpStatus(server.getBoundHttpPort());
+            new ControlClient(BenchmarkSupport.stopPort(), BenchmarkSupport.STOP_COMMAND).stop();
+            state = server.getLifecycle().await(STOP_TIMEOUT + TimeUnit.MILLISECONDS.toSeconds(drainTimeout), TimeUnit.SECONDS, LifecycleState.STOPPED);
+            if (state != LifecycleState.STOPPED) {
+                throw new IllegalStateException("payara-micro is not stopped: " + state, server.getLifecycle().getFailure());
+            }
+        } finally {
+            latch.countDown();
+            try {
+                stopServer.close();
+            } catch (Exception e) {
+                System.err.println("Fail to close StopServer: " + e.getMessage());
+            }
+        }
+        if (!executors.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Threads running payara-micro and StopServer did not finish.");
+        }
+        AlternativePayaraMicro.reset();
+        return status;
+    }
+
+    private static int httpStatus(int port) {
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection) new URL("http", "localhost", port, "/").openConnection();
+            con.setConnectTimeout(CONNECT_TIMEOUT);
+            con.setReadTimeout(CONNECT_TIMEOUT);
+            return con.getResponseCode();
+        } catch (IOException e) {
+            System.err.println("HTTP request failed: " + e);
+            return -1;
+        } finally {
+            if (con != null) {
+                con.disconnect();
+            }
+        }
+    }
+}
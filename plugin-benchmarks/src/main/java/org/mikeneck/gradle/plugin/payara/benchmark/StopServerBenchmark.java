@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.benchmark;
+
+import fish.payara.micro.BootstrapException;
+import fish.payara.micro.PayaraMicroRuntime;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.server.ControlClient;
+import org.mikeneck.gradle.plugin.payara.server.PayaraMicroServer;
+import org.mikeneck.gradle.plugin.payara.server.StopServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of a request to {@link StopServer} while payara-micro is running.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class StopServerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean noCluster;
+
+    private PayaraMicroRuntime runtime;
+
+    private StopServer stopServer;
+
+    private ControlClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, BootstrapException {
+        runtime = BenchmarkSupport.boot(noCluster);
+        PayaraMicroServer payaraServer = new PayaraMicroServer(new CountDownLatch(1)) {
+            @Override
+            protected AlternativePayaraMicro createPayaraMicro() {
+                return AlternativePayaraMicro.getInstance(false);
+            }
+        };
+        stopServer = new StopServer(BenchmarkSupport.stopPort(), BenchmarkSupport.STOP_COMMAND, new CountDownLatch(1),
+                "benchmark", payaraServer);
+        Thread thread = new Thread(stopServer, "StopServer");
+        thread.setDaemon(true);
+        thread.start();
+        client = new ControlClient(BenchmarkSupport.stopPort(), BenchmarkSupport.STOP_COMMAND);
+    }
+
+    @Benchmark
+    public String roundTrip() throws IOException {
+        return client.settings();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        stopServer.close();
+        runtime.shutdown();
+    }
+}
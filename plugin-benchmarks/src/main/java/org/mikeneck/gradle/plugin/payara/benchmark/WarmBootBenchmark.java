@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.benchmark;
+
+import fish.payara.micro.BootstrapException;
+import fish.payara.micro.PayaraMicroRuntime;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.micro.GlassFishRuntimePool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm boot of {@link AlternativePayaraMicro#bootStrap()}, reusing GlassFishRuntime pooled by {@link GlassFishRuntimePool}
+ * as the second and later {@code payaraRunWar} in a gradle daemon do.
+ * The warmup iteration bootstraps the runtime.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(3)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class WarmBootBenchmark {
+
+    @Param({"false", "true"})
+    public boolean noCluster;
+
+    private AlternativePayaraMicro payaraMicro;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        payaraMicro = BenchmarkSupport.payaraMicro(noCluster);
+    }
+
+    @Benchmark
+    public PayaraMicroRuntime bootStrap() throws BootstrapException {
+        return payaraMicro.bootStrap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws BootstrapException {
+        if (payaraMicro.isRunning()) {
+            payaraMicro.shutdown();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void evict() {
+        GlassFishRuntimePool.evict();
+    }
+}
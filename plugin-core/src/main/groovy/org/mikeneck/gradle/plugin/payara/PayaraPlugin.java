@@ -15,18 +15,32 @@
  */
 package org.mikeneck.gradle.plugin.payara;
 
-import org.gradle.api.Action;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.ConventionMapping;
+import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.WarPlugin;
+import org.gradle.api.plugins.WarPluginConvention;
 import org.gradle.api.tasks.TaskContainer;
 import org.gradle.api.tasks.bundling.War;
+import org.mikeneck.gradle.plugin.payara.micro.PayaraVersion;
 import org.mikeneck.gradle.plugin.payara.model.PayaraSetting;
 import org.mikeneck.gradle.plugin.payara.model.PayaraSettingPojo;
+import org.mikeneck.gradle.plugin.payara.task.AbstractPayaraTask;
+import org.mikeneck.gradle.plugin.payara.task.PayaraCreateCdsArchive;
+import org.mikeneck.gradle.plugin.payara.task.PayaraDeployShared;
+import org.mikeneck.gradle.plugin.payara.task.PayaraLoadTest;
+import org.mikeneck.gradle.plugin.payara.task.PayaraPrepareInstance;
+import org.mikeneck.gradle.plugin.payara.task.PayaraRun;
+import org.mikeneck.gradle.plugin.payara.task.PayaraRunFleet;
 import org.mikeneck.gradle.plugin.payara.task.PayaraRunWar;
 import org.mikeneck.gradle.plugin.payara.task.PayaraStop;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 public class PayaraPlugin implements Plugin<Project> {
 
@@ -38,10 +52,77 @@ public class PayaraPlugin implements Plugin<Project> {
 
     public static final boolean DEFAULT_DAEMON = false;
 
+    public static final boolean DEFAULT_PERSISTENT = false;
+
+    public static final String DEFAULT_READINESS_PATH = "";
+
+    public static final int DEFAULT_READY_TIMEOUT = 300;
+
+    public static final int DEFAULT_DEPLOYMENT_THREADS = 1;
+
+    public static final int DEFAULT_MIN_HTTP_THREADS = 0;
+
+    public static final int DEFAULT_MAX_HTTP_THREADS = 0;
+
+    public static final boolean DEFAULT_AUTO_HTTP_THREADS = false;
+
+    public static final String DEFAULT_WORKLOAD = "blocking-io";
+
+    public static final int DEFAULT_DRAIN_TIMEOUT = 10;
+
+    public static final boolean DEFAULT_FORK = false;
+
+    public static final String DEFAULT_PROFILE = "default";
+
+    /**
+     * base ssl port searched from when ports are allocated.
+     */
+    public static final int DEFAULT_SSL_PORT = 8181;
+
+    /**
+     * base cluster port searched from when ports are allocated.
+     */
+    public static final int DEFAULT_CLUSTER_PORT = 5900;
+
+    /**
+     * file under gradle user home, in which ports reserved by payara-micro on this host are kept.
+     */
+    public static final String PORT_REGISTRY = "caches/payara-plugin/ports.properties";
+
+    /**
+     * file under build directory, in which boot time and resident memory of each profile are kept.
+     */
+    public static final String PROFILE_BASELINE = "payara/boot-profiles.properties";
+
+    /**
+     * seconds for payaraStop to wait for payara-micro to shutdown after draining.
+     */
+    public static final int SHUTDOWN_TIMEOUT = 60;
+
     public static final String PAYARA_CONVENTION = "payara";
 
     public static final String STOP_METHOD = "POST";
 
+    /**
+     * directory under gradle user home, in which installed instance roots are cached.
+     */
+    public static final String INSTANCE_ROOT_CACHE = "caches/payara-plugin/instance-roots";
+
+    /**
+     * directory under gradle user home, in which AppCDS archives are stored.
+     */
+    public static final String CDS_CACHE = "caches/payara-plugin/cds";
+
+    /**
+     * directory under build directory of the root project, used as instance root of the shared server.
+     */
+    public static final String SHARED_ROOT_DIR = "payara/shared";
+
+    /**
+     * directory under build directory, into which payaraPrepareInstance prepares instance root.
+     */
+    public static final String PREPARED_INSTANCE = "payara/instance";
+
     /**
      * minimum port number(included)
      */
@@ -61,17 +142,37 @@ public class PayaraPlugin implements Plugin<Project> {
                         DEFAULT_HTTP_PORT,
                         DEFAULT_STOP_PORT,
                         DEFAULT_STOP_COMMAND,
-                        DEFAULT_DAEMON);
+                        DEFAULT_DAEMON,
+                        DEFAULT_PERSISTENT,
+                        DEFAULT_READINESS_PATH,
+                        DEFAULT_READY_TIMEOUT,
+                        DEFAULT_DEPLOYMENT_THREADS,
+                        DEFAULT_MIN_HTTP_THREADS,
+                        DEFAULT_MAX_HTTP_THREADS,
+                        DEFAULT_AUTO_HTTP_THREADS,
+                        DEFAULT_WORKLOAD,
+                        DEFAULT_DRAIN_TIMEOUT,
+                        DEFAULT_FORK,
+                        DEFAULT_PROFILE);
 
-        final PayaraRunWar runWar = createPayaraRunWarTask(project.getTasks());
-        final PayaraStop stopTask = createPayaraStopTask(project.getTasks());
-        project.afterEvaluate(new Action<Project>() {
-            @Override
-            public void execute(Project prj) {
-                configurePayaraRunWar(prj, runWar, setting);
-                configurePayaraStop(stopTask, setting);
-            }
-        });
+        // values are mapped lazily, so that nothing is computed until a task reads them at execution
+        TaskContainer tasks = project.getTasks();
+        PayaraPrepareInstance prepareInstance = createPayaraPrepareInstanceTask(tasks);
+        configurePayaraPrepareInstance(project, prepareInstance, setting);
+        configurePayaraRunWar(project, createPayaraRunWarTask(tasks), setting, prepareInstance);
+        configurePayaraRun(project, createPayaraRunTask(tasks), setting, prepareInstance);
+        configurePayaraRunFleet(project, createPayaraRunFleetTask(tasks), setting);
+        configurePayaraStop(project, createPayaraStopTask(tasks), setting);
+        configurePayaraLoadTest(project, createPayaraLoadTestTask(tasks), setting);
+        configurePayaraCreateCdsArchive(project, createPayaraCreateCdsArchiveTask(tasks), setting);
+        configurePayaraDeployShared(project, createPayaraDeploySharedTask(tasks), setting);
+    }
+
+    private static PayaraPrepareInstance createPayaraPrepareInstanceTask(TaskContainer tasks) {
+        PayaraPrepareInstance task = tasks.create(PayaraPrepareInstance.TASK_NAME, PayaraPrepareInstance.class);
+        task.setGroup(WarPlugin.WEB_APP_GROUP);
+        task.setDescription(PayaraPrepareInstance.DESCRIPTION);
+        return task;
     }
 
     private static PayaraRunWar createPayaraRunWarTask(TaskContainer tasks) {
@@ -82,6 +183,22 @@ public class PayaraPlugin implements Plugin<Project> {
         return task;
     }
 
+    private static PayaraRun createPayaraRunTask(TaskContainer tasks) {
+        PayaraRun task = tasks.create(PayaraRun.TASK_NAME, PayaraRun.class);
+        task.setGroup(WarPlugin.WEB_APP_GROUP);
+        task.dependsOn(JavaPlugin.CLASSES_TASK_NAME);
+        task.setDescription(PayaraRun.DESCRIPTION);
+        return task;
+    }
+
+    private static PayaraRunFleet createPayaraRunFleetTask(TaskContainer tasks) {
+        PayaraRunFleet task = tasks.create(PayaraRunFleet.TASK_NAME, PayaraRunFleet.class);
+        task.setGroup(WarPlugin.WEB_APP_GROUP);
+        task.dependsOn(WarPlugin.WAR_TASK_NAME);
+        task.setDescription(PayaraRunFleet.DESCRIPTION);
+        return task;
+    }
+
     private static PayaraStop createPayaraStopTask(TaskContainer tasks) {
         PayaraStop task = tasks.create(PayaraStop.TASK_NAME, PayaraStop.class);
         task.setGroup(WarPlugin.WEB_APP_GROUP);
@@ -89,17 +206,372 @@ public class PayaraPlugin implements Plugin<Project> {
         return task;
     }
 
-    private void configurePayaraStop(PayaraStop stopTask, PayaraSetting setting) {
-        stopTask.setStopPort(setting.getStopPort());
-        stopTask.setStopCommand(setting.getStopCommand());
+    private static PayaraLoadTest createPayaraLoadTestTask(TaskContainer tasks) {
+        PayaraLoadTest task = tasks.create(PayaraLoadTest.TASK_NAME, PayaraLoadTest.class);
+        task.setGroup(WarPlugin.WEB_APP_GROUP);
+        task.setDescription(PayaraLoadTest.DESCRIPTION);
+        return task;
+    }
+
+    private static PayaraCreateCdsArchive createPayaraCreateCdsArchiveTask(TaskContainer tasks) {
+        PayaraCreateCdsArchive task = tasks.create(PayaraCreateCdsArchive.TASK_NAME, PayaraCreateCdsArchive.class);
+        task.setGroup(WarPlugin.WEB_APP_GROUP);
+        task.dependsOn(WarPlugin.WAR_TASK_NAME);
+        task.setDescription(PayaraCreateCdsArchive.DESCRIPTION);
+        return task;
+    }
+
+    private static PayaraDeployShared createPayaraDeploySharedTask(TaskContainer tasks) {
+        PayaraDeployShared task = tasks.create(PayaraDeployShared.TASK_NAME, PayaraDeployShared.class);
+        task.setGroup(WarPlugin.WEB_APP_GROUP);
+        task.dependsOn(WarPlugin.WAR_TASK_NAME);
+        task.setDescription(PayaraDeployShared.DESCRIPTION);
+        return task;
+    }
+
+    private void configurePayaraPrepareInstance(final Project prj, PayaraPrepareInstance task, final PayaraSetting setting) {
+        ConventionMapping mapping = task.getConventionMapping();
+        mapping.map("profile", new Callable<String>() {
+            @Override
+            public String call() {
+                return setting.getProfile();
+            }
+        });
+        mapping.map("payaraVersion", new Callable<String>() {
+            @Override
+            public String call() {
+                return PayaraVersion.current();
+            }
+        });
+        mapping.map("instanceDir", new Callable<File>() {
+            @Override
+            public File call() {
+                return new File(prj.getBuildDir(), PREPARED_INSTANCE);
+            }
+        });
+    }
+
+    private void configurePayaraDeployShared(final Project prj, PayaraDeployShared task, final PayaraSetting setting) {
+        ConventionMapping mapping = task.getConventionMapping();
+        mapPorts(mapping, setting);
+        mapping.map("readyTimeout", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getReadyTimeout();
+            }
+        });
+        mapping.map("profile", new Callable<String>() {
+            @Override
+            public String call() {
+                return setting.getProfile();
+            }
+        });
+        mapping.map("rootDir", new Callable<File>() {
+            @Override
+            public File call() {
+                return new File(prj.getRootProject().getBuildDir(), SHARED_ROOT_DIR);
+            }
+        });
+        mapping.map("instanceRootCache", new Callable<File>() {
+            @Override
+            public File call() {
+                return instanceRootCache(prj);
+            }
+        });
+        mapWar(mapping, prj);
+        mapping.map("contextRoot", new Callable<String>() {
+            @Override
+            public String call() {
+                return "/" + prj.getName();
+            }
+        });
+    }
+
+    private void configurePayaraCreateCdsArchive(final Project prj, PayaraCreateCdsArchive task, PayaraSetting setting) {
+        ConventionMapping mapping = task.getConventionMapping();
+        mapPorts(mapping, setting);
+        mapReadiness(mapping, setting);
+        mapCaches(mapping, prj);
+        mapWar(mapping, prj);
+    }
+
+    private void configurePayaraLoadTest(final Project prj, PayaraLoadTest loadTest, final PayaraSetting setting) {
+        ConventionMapping mapping = loadTest.getConventionMapping();
+        mapping.map("httpPort", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getHttpPort();
+            }
+        });
+        mapping.map("reportFile", new Callable<File>() {
+            @Override
+            public File call() {
+                return new File(prj.getBuildDir(), "payara/load-test.json");
+            }
+        });
+    }
+
+    private void configurePayaraStop(final Project prj, PayaraStop stopTask, final PayaraSetting setting) {
+        ConventionMapping mapping = stopTask.getConventionMapping();
+        mapPorts(mapping, setting);
+        mapping.map("timeout", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getDrainTimeout() + SHUTDOWN_TIMEOUT;
+            }
+        });
+        mapping.map("portsFiles", new Callable<List<File>>() {
+            @Override
+            public List<File> call() {
+                return Arrays.asList(portsFile(prj, PayaraRunWar.TASK_NAME), portsFile(prj, PayaraRun.TASK_NAME));
+            }
+        });
+    }
+
+    private void configurePayaraRunWar(final Project prj, PayaraRunWar runWar, PayaraSetting setting, PayaraPrepareInstance prepareInstance) {
+        mapRunSettings(prj, runWar, setting);
+        mapPreparedInstance(runWar, prepareInstance);
+        mapWar(runWar.getConventionMapping(), prj);
+    }
+
+    private void configurePayaraRun(final Project prj, PayaraRun run, PayaraSetting setting, PayaraPrepareInstance prepareInstance) {
+        mapRunSettings(prj, run, setting);
+        mapPreparedInstance(run, prepareInstance);
+        ConventionMapping mapping = run.getConventionMapping();
+        mapping.map("webAppDir", new Callable<File>() {
+            @Override
+            public File call() {
+                return prj.getConvention().getPlugin(WarPluginConvention.class).getWebAppDir();
+            }
+        });
+        mapping.map("classpath", new Callable<FileCollection>() {
+            @Override
+            public FileCollection call() {
+                return warTask(prj).getClasspath();
+            }
+        });
+        mapping.map("explodedDir", new Callable<File>() {
+            @Override
+            public File call() {
+                String archiveName = warTask(prj).getArchiveName();
+                String appName = archiveName.endsWith(".war") ? archiveName.substring(0, archiveName.length() - 4) : archiveName;
+                return new File(prj.getBuildDir(), "payara/exploded/" + appName);
+            }
+        });
+    }
+
+    private void configurePayaraRunFleet(final Project prj, PayaraRunFleet runFleet, final PayaraSetting setting) {
+        ConventionMapping mapping = runFleet.getConventionMapping();
+        mapPorts(mapping, setting);
+        mapping.map("daemon", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return setting.getDaemon();
+            }
+        });
+        mapReadiness(mapping, setting);
+        mapThreads(mapping, setting);
+        mapCaches(mapping, prj);
+        mapWar(mapping, prj);
+    }
+
+    /**
+     * map extension values and files under build directory to properties of {@code payaraRunWar} and {@code payaraRun}.
+     */
+    private static void mapRunSettings(final Project prj, final AbstractPayaraTask task, final PayaraSetting setting) {
+        ConventionMapping mapping = task.getConventionMapping();
+        mapPorts(mapping, setting);
+        mapReadiness(mapping, setting);
+        mapThreads(mapping, setting);
+        mapCaches(mapping, prj);
+        mapping.map("daemon", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return setting.getDaemon();
+            }
+        });
+        mapping.map("persistent", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return setting.getPersistent();
+            }
+        });
+        mapping.map("fork", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return setting.getFork();
+            }
+        });
+        mapping.map("profile", new Callable<String>() {
+            @Override
+            public String call() {
+                return setting.getProfile();
+            }
+        });
+        mapping.map("profileBaseline", new Callable<File>() {
+            @Override
+            public File call() {
+                return new File(prj.getBuildDir(), PROFILE_BASELINE);
+            }
+        });
+        mapping.map("bootTimingsReport", new Callable<File>() {
+            @Override
+            public File call() {
+                return new File(prj.getBuildDir(), "payara/" + task.getName() + "-boot-timings.json");
+            }
+        });
+        mapping.map("metricsFile", new Callable<File>() {
+            @Override
+            public File call() {
+                return new File(prj.getBuildDir(), "payara/" + task.getName() + "-metrics.csv");
+            }
+        });
+        mapping.map("logFile", new Callable<File>() {
+            @Override
+            public File call() {
+                return new File(prj.getBuildDir(), "payara/" + task.getName() + ".log");
+            }
+        });
+        mapping.map("portRegistry", new Callable<File>() {
+            @Override
+            public File call() {
+                return portRegistry(prj);
+            }
+        });
+        mapping.map("portsFile", new Callable<File>() {
+            @Override
+            public File call() {
+                return portsFile(prj, task.getName());
+            }
+        });
+    }
+
+    private static void mapPreparedInstance(AbstractPayaraTask task, final PayaraPrepareInstance prepareInstance) {
+        task.dependsOn(prepareInstance);
+        task.getConventionMapping().map("preparedInstance", new Callable<File>() {
+            @Override
+            public File call() {
+                return prepareInstance.getInstanceDir();
+            }
+        });
+    }
+
+    private static void mapPorts(ConventionMapping mapping, final PayaraSetting setting) {
+        mapping.map("httpPort", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getHttpPort();
+            }
+        });
+        mapping.map("stopPort", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getStopPort();
+            }
+        });
+        mapping.map("stopCommand", new Callable<String>() {
+            @Override
+            public String call() {
+                return setting.getStopCommand();
+            }
+        });
+    }
+
+    private static void mapReadiness(ConventionMapping mapping, final PayaraSetting setting) {
+        mapping.map("readinessPath", new Callable<String>() {
+            @Override
+            public String call() {
+                return setting.getReadinessPath();
+            }
+        });
+        mapping.map("readyTimeout", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getReadyTimeout();
+            }
+        });
+    }
+
+    private static void mapThreads(ConventionMapping mapping, final PayaraSetting setting) {
+        mapping.map("deploymentThreads", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getDeploymentThreads();
+            }
+        });
+        mapping.map("minHttpThreads", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getMinHttpThreads();
+            }
+        });
+        mapping.map("maxHttpThreads", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getMaxHttpThreads();
+            }
+        });
+        mapping.map("autoHttpThreads", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return setting.getAutoHttpThreads();
+            }
+        });
+        mapping.map("workload", new Callable<String>() {
+            @Override
+            public String call() {
+                return setting.getWorkload();
+            }
+        });
+        mapping.map("drainTimeout", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return setting.getDrainTimeout();
+            }
+        });
+    }
+
+    private static void mapCaches(ConventionMapping mapping, final Project prj) {
+        mapping.map("instanceRootCache", new Callable<File>() {
+            @Override
+            public File call() {
+                return instanceRootCache(prj);
+            }
+        });
+        mapping.map("cdsCache", new Callable<File>() {
+            @Override
+            public File call() {
+                return cdsCache(prj);
+            }
+        });
+    }
+
+    private static void mapWar(ConventionMapping mapping, final Project prj) {
+        mapping.map("war", new Callable<File>() {
+            @Override
+            public File call() {
+                return warTask(prj).getArchivePath();
+            }
+        });
+    }
+
+    private static War warTask(Project prj) {
+        return (War) prj.getTasks().getByName(WarPlugin.WAR_TASK_NAME);
+    }
+
+    private static File portsFile(Project prj, String taskName) {
+        return new File(prj.getBuildDir(), "payara/" + taskName + "-ports.properties");
+    }
+
+    private static File instanceRootCache(Project prj) {
+        return new File(prj.getGradle().getGradleUserHomeDir(), INSTANCE_ROOT_CACHE);
+    }
+
+    private static File portRegistry(Project prj) {
+        return new File(prj.getGradle().getGradleUserHomeDir(), PORT_REGISTRY);
     }
 
-    private void configurePayaraRunWar(Project prj, PayaraRunWar runWar, PayaraSetting setting) {
-        runWar.setHttpPort(setting.getHttpPort());
-        runWar.setStopPort(setting.getStopPort());
-        runWar.setStopCommand(setting.getStopCommand());
-        runWar.setDaemon(setting.getDaemon());
-        File archivePath = ((War) prj.getTasks().getByName(WarPlugin.WAR_TASK_NAME)).getArchivePath();
-        runWar.setWar(archivePath);
+    private static File cdsCache(Project prj) {
+        return new File(prj.getGradle().getGradleUserHomeDir(), CDS_CACHE);
     }
 }
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.fleet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TCP proxy which serves a stable port in front of payara-micro instances.
+ * <p>
+ * Each accepted connection is relayed to a backend chosen by {@link Balancing}, and stays on it until both sides close.
+ * A backend refusing connection is skipped, and the next candidate is tried.
+ */
+public class FleetProxy implements Runnable, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FleetProxy.class);
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public enum Balancing {
+        ROUND_ROBIN("round-robin"),
+        LEAST_CONNECTIONS("least-connections");
+
+        private final String id;
+
+        Balancing(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @param id {@code round-robin} or {@code least-connections}.
+         * @return balancing for id, or {@code null} if id is unknown.
+         */
+        public static Balancing of(String id) {
+            for (Balancing balancing : values()) {
+                if (balancing.id.equalsIgnoreCase(id)) {
+                    return balancing;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+
+    private final List<Backend> backends;
+
+    private final Balancing balancing;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Set<Socket> sockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private final ExecutorService relays;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * @param port port to be served.
+     * @param backends addresses of payara-micro instances.
+     * @param balancing the way to choose a backend.
+     * @throws IOException when port is not available.
+     */
+    public FleetProxy(int port, List<InetSocketAddress> backends, Balancing balancing) throws IOException {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("No backend is given to proxy.");
+        }
+        List<Backend> list = new ArrayList<>(backends.size());
+        for (InetSocketAddress address : backends) {
+            list.add(new Backend(address));
+        }
+        this.backends = Collections.unmodifiableList(list);
+        this.balancing = balancing;
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        this.relays = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "payara-fleet-proxy-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        LOG.info("Fleet proxy is listening on port {} with {} balancing over {}.", serverSocket.getLocalPort(), balancing.getId(), backends);
+        while (!closed.get()) {
+            final Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed.get()) {
+                    LOG.warn("Fleet proxy failed to accept connection.", e);
+                }
+                continue;
+            }
+            try {
+                relays.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        relay(client);
+                    }
+                });
+            } catch (RuntimeException e) {
+                LOG.debug("Fleet proxy rejected connection.", e);
+                closeQuietly(client);
+            }
+        }
+    }
+
+    private void relay(Socket client) {
+        for (Backend backend : candidates()) {
+            backend.connections.incrementAndGet();
+            Socket upstream = new Socket();
+            try {
+                upstream.connect(backend.address, CONNECT_TIMEOUT);
+                upstream.setTcpNoDelay(true);
+                client.setTcpNoDelay(true);
+            } catch (IOException e) {
+                LOG.debug("Backend {} is not available.", backend, e);
+                backend.connections.decrementAndGet();
+                closeQuietly(upstream);
+                continue;
+            }
+            backend.relayed.incrementAndGet();
+            Connection connection = new Connection(client, upstream, backend);
+            relays.execute(connection.pump(upstream, client));
+            connection.pump(client, upstream).run();
+            return;
+        }
+        LOG.warn("No backend is available for connection from {}.", client.getRemoteSocketAddress());
+        closeQuietly(client);
+    }
+
+    /**
+     * @return backends in the order to be tried, the first one is chosen by {@link #balancing}.
+     */
+    private List<Backend> candidates() {
+        int size = backends.size();
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        List<Backend> ordered = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ordered.add(backends.get((start + i) % size));
+        }
+        if (balancing == Balancing.LEAST_CONNECTIONS) {
+            int least = 0;
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                int connections = ordered.get(i).connections.get();
+                if (connections < min) {
+                    min = connections;
+                    least = i;
+                }
+            }
+            ordered.add(0, ordered.remove(least));
+        }
+        return ordered;
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        closeQuietly(serverSocket);
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        relays.shutdownNow();
+        for (Backend backend : backends) {
+            LOG.info("Fleet proxy relayed {} connections to {}.", backend.relayed.get(), backend);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOG.debug("An error has occurred while closing {}.", closeable, e);
+        }
+    }
+
+    private static class Backend {
+
+        private final InetSocketAddress address;
+
+        private final AtomicInteger connections = new AtomicInteger();
+
+        private final AtomicLong relayed = new AtomicLong();
+
+        private Backend(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public String toString() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+    }
+
+    /**
+     * a pair of client and upstream sockets, which is closed when both directions finish.
+     */
+    private class Connection {
+
+        private final Socket client;
+
+        private final Socket upstream;
+
+        private final Backend backend;
+
+        private final AtomicInteger open = new AtomicInteger(2);
+
+        private Connection(Socket client, Socket upstream, Backend backend) {
+            this.client = client;
+            this.upstream = upstream;
+            this.backend = backend;
+            sockets.add(client);
+            sockets.add(upstream);
+        }
+
+        private Runnable pump(final Socket from, final Socket to) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    try {
+                        InputStream in = from.getInputStream();
+                        OutputStream out = to.getOutputStream();
+                        int read;
+                        while ((read = in.read(buffer)) >= 0) {
+                            out.write(buffer, 0, read);
+                            out.flush();
+                        }
+                        to.shutdownOutput();
+                    } catch (IOException e) {
+                        LOG.debug("Relay to {} is broken.", backend, e);
+                        closeQuietly(from);
+                        closeQuietly(to);
+                    } finally {
+                        finish();
+                    }
+                }
+            };
+        }
+
+        private void finish() {
+            if (open.decrementAndGet() == 0) {
+                closeQuietly(client);
+                closeQuietly(upstream);
+                sockets.remove(client);
+                sockets.remove(upstream);
+                backend.connections.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.fleet;
+
+import org.mikeneck.gradle.plugin.payara.fork.ForkedPayaraMicro;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * payara-micro instances running in child JVMs behind {@link FleetProxy}.
+ */
+public class PayaraFleet {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayaraFleet.class);
+
+    /**
+     * time to wait for each instance to exit after stop command.
+     */
+    private static final long STOP_TIMEOUT = 60000L;
+
+    private final int port;
+
+    private final FleetProxy.Balancing balancing;
+
+    private final List<ForkedPayaraMicro> members;
+
+    private final List<InetSocketAddress> backends = new ArrayList<>();
+
+    private FleetProxy proxy;
+
+    /**
+     * @param port port served by proxy.
+     * @param balancing the way proxy chooses an instance.
+     * @param members instances of the fleet, which are not started yet.
+     */
+    public PayaraFleet(int port, FleetProxy.Balancing balancing, List<ForkedPayaraMicro> members) {
+        this.port = port;
+        this.balancing = balancing;
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+    }
+
+    /**
+     * start all instances at once, wait for them to be ready, then start proxy in front of them.
+     * Instances which have been started are stopped when any of them fails.
+     * @param timeout time to wait for all instances to be ready.
+     * @param unit unit of timeout.
+     * @throws IOException when any instance or proxy fails to start.
+     * @throws InterruptedException when interrupted.
+     */
+    public void start(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (ForkedPayaraMicro member : members) {
+                member.start();
+            }
+            for (ForkedPayaraMicro member : members) {
+                long remaining = Math.max(0L, deadline - System.nanoTime());
+                int httpPort = member.awaitReady(remaining, TimeUnit.NANOSECONDS);
+                LOG.info("{} is ready on port {}.", member, httpPort);
+                backends.add(new InetSocketAddress("localhost", httpPort));
+            }
+            proxy = new FleetProxy(port, backends, balancing);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            shutdown();
+            throw e;
+        }
+        Thread thread = new Thread(proxy, "payara-fleet-proxy");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * close proxy so that no new connection comes, then stop all instances at once.
+     * Each instance drains its in-flight requests before shutting down.
+     */
+    public void shutdown() {
+        if (proxy != null) {
+            proxy.close();
+        }
+        long timeout = STOP_TIMEOUT;
+        for (ForkedPayaraMicro member : members) {
+            member.requestStop();
+            timeout = Math.max(timeout, STOP_TIMEOUT + TimeUnit.SECONDS.toMillis(member.getSpec().getDrainTimeout()));
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        for (ForkedPayaraMicro member : members) {
+            member.awaitExit(Math.max(0L, deadline - System.currentTimeMillis()));
+        }
+        LOG.info("Payara-micro fleet on port {} is shut down.", port);
+    }
+
+    /**
+     * @return addresses of ready instances.
+     */
+    public List<InetSocketAddress> getBackends() {
+        return Collections.unmodifiableList(backends);
+    }
+}
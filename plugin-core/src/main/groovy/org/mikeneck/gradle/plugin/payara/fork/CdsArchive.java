@@ -0,0 +1,320 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.fork;
+
+import org.mikeneck.gradle.plugin.payara.micro.PayaraVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Application class-data-sharing archive of a JVM running {@link PayaraMicroLauncher}.
+ * <p>
+ * An archive is keyed by payara version, JVM version, classpath of the child JVM and libraries({@code WEB-INF/lib}) of deployed archives,
+ * so that changes of application classes don't invalidate it. Along with the archive, startup time of the training run
+ * without the archive is stored as the baseline, with which later runs report the time saved.
+ */
+public class CdsArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CdsArchive.class);
+
+    private static final String WEB_INF_LIB = "WEB-INF/lib/";
+
+    private static final String BASELINE = "baselineMillis";
+
+    /**
+     * The way to create an archive, which depends on JVM version.
+     */
+    public enum Mode {
+        /**
+         * JDK 13 or later dumps loaded classes at exit({@code -XX:ArchiveClassesAtExit}).
+         */
+        DYNAMIC,
+        /**
+         * JDK 10 to 12 dumps a class list at training run, then creates an archive from it({@code -Xshare:dump}).
+         */
+        CLASS_LIST,
+        /**
+         * AppCDS is not available in OpenJDK 9 or earlier.
+         */
+        UNSUPPORTED;
+
+        public static Mode current() {
+            int feature = featureVersion(System.getProperty("java.specification.version"));
+            if (feature >= 13) {
+                return DYNAMIC;
+            }
+            if (feature >= 10) {
+                return CLASS_LIST;
+            }
+            return UNSUPPORTED;
+        }
+
+        static int featureVersion(String specification) {
+            String version = specification.startsWith("1.") ? specification.substring(2) : specification;
+            int dot = version.indexOf('.');
+            try {
+                return Integer.parseInt(dot < 0 ? version : version.substring(0, dot));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    private final File archive;
+
+    private final File metadata;
+
+    private CdsArchive(File cacheDir, String key) {
+        this.archive = new File(cacheDir, key + ".jsa");
+        this.metadata = new File(cacheDir, key + ".properties");
+    }
+
+    /**
+     * @param cacheDir directory in which archives are stored.
+     * @param deployments archives deployed to payara-micro.
+     * @return archive for the current JVM and deployments, which may not exist yet.
+     * @throws IOException when deployments are not readable.
+     */
+    public static CdsArchive of(File cacheDir, List<File> deployments) throws IOException {
+        return new CdsArchive(cacheDir, key(deployments));
+    }
+
+    private static String key(List<File> deployments) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, PayaraVersion.current());
+            update(digest, System.getProperty("java.vm.vendor") + " " + System.getProperty("java.vm.version"));
+            update(digest, ForkClasspath.current());
+            for (File deployment : deployments) {
+                for (String library : libraries(deployment)) {
+                    update(digest, library);
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @return names and sizes of libraries in {@code WEB-INF/lib}, which are the same between a war file and the exploded war.
+     */
+    private static List<String> libraries(File deployment) throws IOException {
+        List<String> libraries = new ArrayList<>();
+        if (deployment.isDirectory()) {
+            File[] jars = new File(deployment, WEB_INF_LIB).listFiles();
+            if (jars != null) {
+                for (File jar : jars) {
+                    libraries.add(jar.getName() + ":" + jar.length());
+                }
+            }
+        } else if (deployment.isFile()) {
+            try (ZipFile zip = new ZipFile(deployment)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().startsWith(WEB_INF_LIB) && !entry.isDirectory()) {
+                        libraries.add(entry.getName().substring(WEB_INF_LIB.length()) + ":" + entry.getSize());
+                    }
+                }
+            }
+        }
+        Collections.sort(libraries);
+        return libraries;
+    }
+
+    public boolean exists() {
+        return archive.isFile();
+    }
+
+    /**
+     * @param cacheDir directory in which archives are stored, or {@code null}.
+     * @param deployments archives deployed to payara-micro.
+     * @return an existing archive for the current JVM and deployments, or {@code null}.
+     */
+    public static CdsArchive find(File cacheDir, List<File> deployments) {
+        if (cacheDir == null || Mode.current() == Mode.UNSUPPORTED) {
+            return null;
+        }
+        try {
+            CdsArchive archive = of(cacheDir, deployments);
+            return archive.exists() ? archive : null;
+        } catch (IOException e) {
+            LOG.debug("Fail to find AppCDS archive.", e);
+            return null;
+        }
+    }
+
+    public File getArchive() {
+        return archive;
+    }
+
+    /**
+     * @param workDir working directory of the training run.
+     * @return JVM arguments of the training run, which dump loaded classes.
+     */
+    public List<String> trainingJvmArgs(File workDir) {
+        switch (Mode.current()) {
+            case DYNAMIC:
+                return Collections.singletonList("-XX:ArchiveClassesAtExit=" + trainingArchive(workDir).getAbsolutePath());
+            case CLASS_LIST:
+                return unlockAppCds(Arrays.asList("-Xshare:off", "-XX:DumpLoadedClassList=" + classList(workDir).getAbsolutePath()));
+            default:
+                throw new IllegalStateException("AppCDS is not available on Java " + System.getProperty("java.specification.version") + ".");
+        }
+    }
+
+    /**
+     * @return JVM arguments to use this archive. The JVM ignores the archive if it doesn't match.
+     */
+    public List<String> runtimeJvmArgs() {
+        return unlockAppCds(Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + archive.getAbsolutePath()));
+    }
+
+    /**
+     * JDK 10 requires {@code -XX:+UseAppCDS} to archive application classes.
+     */
+    private static List<String> unlockAppCds(List<String> args) {
+        if (Mode.featureVersion(System.getProperty("java.specification.version")) != 10) {
+            return args;
+        }
+        List<String> unlocked = new ArrayList<>(args.size() + 1);
+        unlocked.add("-XX:+UseAppCDS");
+        unlocked.addAll(args);
+        return unlocked;
+    }
+
+    /**
+     * store the result of training run as this archive.
+     * @param workDir working directory of the training run.
+     * @param baselineMillis startup time of the training run.
+     * @throws IOException when the training run didn't produce an archive.
+     */
+    public void storeTrainingResult(File workDir, long baselineMillis) throws IOException {
+        File created = trainingArchive(workDir);
+        if (Mode.current() == Mode.CLASS_LIST) {
+            dump(classList(workDir), created);
+        }
+        if (!created.isFile()) {
+            throw new IOException(String.format("Training run didn't create an AppCDS archive %s.", created));
+        }
+        // copy next to the destination first, so that other builds never see a partial archive
+        File temporary = new File(archive.getAbsoluteFile().getParentFile(), archive.getName() + ".tmp-" + UUID.randomUUID());
+        Files.createDirectories(temporary.getParentFile().toPath());
+        try {
+            Files.copy(created.toPath(), temporary.toPath());
+            Files.move(temporary.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+        Properties props = new Properties();
+        props.setProperty(BASELINE, Long.toString(baselineMillis));
+        try (OutputStream out = Files.newOutputStream(metadata.toPath())) {
+            props.store(out, "AppCDS archive of payara-micro");
+        }
+        LOG.info("AppCDS archive is stored to {}.", archive);
+    }
+
+    private void dump(File classList, File destination) throws IOException {
+        if (!classList.isFile()) {
+            throw new IOException(String.format("Training run didn't create a class list %s.", classList));
+        }
+        List<String> command = new ArrayList<>();
+        command.add(ForkedPayaraMicro.javaExecutable());
+        command.addAll(unlockAppCds(Arrays.asList("-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+                "-XX:SharedArchiveFile=" + destination.getAbsolutePath())));
+        command.add("-cp");
+        command.add(ForkClasspath.current());
+        LOG.debug("Creating AppCDS archive: {}", command);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        StringBuilder output = new StringBuilder();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                output.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            }
+        }
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException(String.format("-Xshare:dump failed: %s", output));
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("-Xshare:dump is interrupted.", e);
+        }
+    }
+
+    /**
+     * @return startup time of the training run without archive, or {@code -1} if unknown.
+     */
+    public long getBaselineMillis() {
+        if (!metadata.isFile()) {
+            return -1L;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(metadata.toPath())) {
+            props.load(in);
+            return Long.parseLong(props.getProperty(BASELINE, "-1"));
+        } catch (IOException | NumberFormatException e) {
+            LOG.debug("Fail to read baseline of AppCDS archive {}.", archive, e);
+            return -1L;
+        }
+    }
+
+    private static File trainingArchive(File workDir) {
+        return new File(workDir, "training.jsa");
+    }
+
+    private static File classList(File workDir) {
+        return new File(workDir, "training.classlist");
+    }
+
+    @Override
+    public String toString() {
+        return archive.getPath();
+    }
+}
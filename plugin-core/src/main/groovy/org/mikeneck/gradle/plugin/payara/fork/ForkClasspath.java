@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.fork;
+
+import fish.payara.micro.PayaraMicroRuntime;
+import org.gradle.api.GradleException;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Classpath of a child JVM running {@link PayaraMicroLauncher}, which is built from the locations of classes loaded by gradle.
+ */
+final class ForkClasspath {
+
+    private static final Class<?>[] ANCHORS = {
+            AlternativePayaraMicro.class,
+            PayaraMicroRuntime.class,
+            LoggerFactory.class,
+            GradleException.class
+    };
+
+    private ForkClasspath() {
+    }
+
+    static String current() {
+        Set<String> entries = new LinkedHashSet<>();
+        for (Class<?> anchor : ANCHORS) {
+            entries.add(locationOf(anchor).getAbsolutePath());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String entry : entries) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparatorChar);
+            }
+            sb.append(entry);
+        }
+        return sb.toString();
+    }
+
+    private static File locationOf(Class<?> anchor) {
+        CodeSource source = anchor.getProtectionDomain().getCodeSource();
+        URL location = source == null ? null : source.getLocation();
+        if (location == null) {
+            throw new GradleException(String.format("Cannot find the location of %s for a child JVM.", anchor.getName()));
+        }
+        try {
+            return new File(location.toURI());
+        } catch (URISyntaxException e) {
+            throw new GradleException(String.format("Invalid location of %s[%s].", anchor.getName(), location), e);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.fork;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.mikeneck.gradle.plugin.payara.micro.ResidentMemory;
+import org.mikeneck.gradle.plugin.payara.server.ControlClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle of payara-micro running in a child JVM launched by {@link PayaraMicroLauncher}.
+ * <p>
+ * Output of the child JVM is forwarded to gradle's log with the prefix of its name.
+ */
+public class ForkedPayaraMicro {
+
+    private static final Logger LOG = Logging.getLogger(ForkedPayaraMicro.class);
+
+    private static final String SPEC_FILE = "launch.properties";
+
+    private final String name;
+
+    private final LaunchSpec spec;
+
+    private final List<String> jvmArgs;
+
+    private final File workDir;
+
+    private final CountDownLatch reported = new CountDownLatch(1);
+
+    private final CountDownLatch exited = new CountDownLatch(1);
+
+    private volatile Process process;
+
+    private volatile int boundHttpPort = Integer.MIN_VALUE;
+
+    private volatile String failure;
+
+    private volatile long startedAt;
+
+    private volatile long readyAt;
+
+    private volatile long residentKb = ResidentMemory.UNKNOWN;
+
+    /**
+     * @param name name of this instance, used as the prefix of output.
+     * @param spec settings of payara-micro.
+     * @param jvmArgs arguments for the child JVM.
+     * @param workDir working directory of the child JVM, where the spec file is written.
+     */
+    public ForkedPayaraMicro(String name, LaunchSpec spec, List<String> jvmArgs, File workDir) {
+        this.name = name;
+        this.spec = spec;
+        this.jvmArgs = new ArrayList<>(jvmArgs);
+        this.workDir = workDir;
+    }
+
+    /**
+     * start the child JVM. This method returns without waiting for payara-micro to boot.
+     * @throws IOException when the child JVM cannot be started.
+     */
+    public void start() throws IOException {
+        File specFile = new File(workDir, SPEC_FILE);
+        spec.store(specFile);
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(ForkClasspath.current());
+        command.add(PayaraMicroLauncher.class.getName());
+        command.add(specFile.getAbsolutePath());
+        LOG.debug("Starting {}: {}", name, command);
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(workDir)
+                .redirectErrorStream(true);
+        startedAt = System.currentTimeMillis();
+        process = builder.start();
+        process.getOutputStream().close();
+        Thread pump = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pumpOutput();
+            }
+        }, "payara-fork-output-" + name);
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    static String javaExecutable() {
+        String executable = File.separatorChar == '\\' ? "java.exe" : "java";
+        return new File(new File(System.getProperty("java.home"), "bin"), executable).getAbsolutePath();
+    }
+
+    private void pumpOutput() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(PayaraMicroLauncher.MARKER)) {
+                    onReport(line.substring(PayaraMicroLauncher.MARKER.length()));
+                } else {
+                    LOG.lifecycle("[{}] {}", name, line);
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Output of {} is closed.", name, e);
+        } finally {
+            if (failure == null && boundHttpPort == Integer.MIN_VALUE) {
+                failure = "the child JVM exited before payara-micro became ready.";
+            }
+            reported.countDown();
+            exited.countDown();
+        }
+    }
+
+    private void onReport(String report) {
+        int space = report.indexOf(' ');
+        String state = space < 0 ? report : report.substring(0, space);
+        String detail = space < 0 ? "" : report.substring(space + 1);
+        LOG.debug("{} reports {} {}", name, state, detail);
+        if (PayaraMicroLauncher.READY.equals(state)) {
+            readyAt = System.currentTimeMillis();
+            String[] values = detail.trim().split(" ");
+            if (values.length > 1) {
+                residentKb = Long.parseLong(values[1]);
+            }
+            boundHttpPort = Integer.parseInt(values[0]);
+            reported.countDown();
+        } else if (PayaraMicroLauncher.FAILED.equals(state)) {
+            failure = detail;
+            reported.countDown();
+        }
+    }
+
+    /**
+     * wait for payara-micro in the child JVM to be ready.
+     * @param timeout time to wait.
+     * @param unit unit of timeout.
+     * @return http port to which payara-micro is bound.
+     * @throws IOException when payara-micro fails or doesn't become ready within timeout.
+     * @throws InterruptedException when interrupted.
+     */
+    public int awaitReady(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        if (!reported.await(timeout, unit)) {
+            throw new IOException(String.format("%s is not ready within %d %s.", name, timeout, unit.name().toLowerCase()));
+        }
+        if (boundHttpPort == Integer.MIN_VALUE) {
+            throw new IOException(String.format("%s has failed: %s", name, failure));
+        }
+        return boundHttpPort;
+    }
+
+    /**
+     * send stop command to the child JVM and wait for it to exit. The child JVM is destroyed when it doesn't exit within timeout.
+     * @param timeoutMillis time to wait for the child JVM to exit.
+     */
+    public void stop(long timeoutMillis) {
+        requestStop();
+        awaitExit(timeoutMillis);
+    }
+
+    /**
+     * send stop command to the child JVM without waiting for it to exit.
+     */
+    public void requestStop() {
+        if (process == null || exited.getCount() == 0) {
+            return;
+        }
+        try {
+            new ControlClient(spec.getStopPort(), spec.getStopCommand()).stop();
+        } catch (IOException e) {
+            LOG.debug("Stop command is not accepted by {}.", name, e);
+        }
+    }
+
+    /**
+     * wait for the child JVM to exit, and destroy it when it doesn't exit within timeout.
+     * @param timeoutMillis time to wait for the child JVM to exit.
+     */
+    public void awaitExit(long timeoutMillis) {
+        if (process == null) {
+            return;
+        }
+        try {
+            if (!exited.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOG.warn("{} did not exit within {} ms, destroying it.", name, timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * wait for the child JVM to exit without timeout.
+     * @return exit value of the child JVM.
+     * @throws InterruptedException when interrupted.
+     */
+    public int waitFor() throws InterruptedException {
+        exited.await();
+        return process.waitFor();
+    }
+
+    /**
+     * @return milliseconds from starting the child JVM to payara-micro being ready, or {@code -1} if it is not ready.
+     */
+    public long getStartupMillis() {
+        return readyAt == 0L ? -1L : readyAt - startedAt;
+    }
+
+    /**
+     * @return resident memory of the child JVM in kilobytes when payara-micro became ready, or {@link ResidentMemory#UNKNOWN}.
+     */
+    public long getResidentKb() {
+        return residentKb;
+    }
+
+    /**
+     * @return {@code true} if the child JVM has exited.
+     */
+    public boolean hasExited() {
+        return exited.getCount() == 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LaunchSpec getSpec() {
+        return spec;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
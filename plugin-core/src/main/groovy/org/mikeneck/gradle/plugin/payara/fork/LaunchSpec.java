@@ -0,0 +1,625 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.fork;
+
+import org.mikeneck.gradle.plugin.payara.log.AsyncLogHandler;
+import org.mikeneck.gradle.plugin.payara.log.LogTarget;
+import org.mikeneck.gradle.plugin.payara.log.TextLogSink;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.micro.BootProfile;
+import org.mikeneck.gradle.plugin.payara.micro.ThreadPoolSizing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Settings of payara-micro launched in a child JVM by {@link PayaraMicroLauncher}.
+ * <p>
+ * They are handed to the child JVM as a properties file, because the child JVM doesn't share any object with gradle.
+ */
+public class LaunchSpec {
+
+    private static final String HTTP_PORT = "httpPort";
+    private static final String AUTO_BIND_HTTP = "autoBindHttp";
+    private static final String AUTO_BIND_RANGE = "autoBindRange";
+    private static final String STOP_PORT = "stopPort";
+    private static final String SSL_PORT = "sslPort";
+    private static final String STOP_COMMAND = "stopCommand";
+    private static final String SETTINGS = "settings";
+    private static final String ROOT_DIR = "rootDir";
+    private static final String INSTANCE_ROOT_CACHE = "instanceRootCache";
+    private static final String INSTANCE_NAME = "instanceName";
+    private static final String NO_CLUSTER = "noCluster";
+    private static final String CLUSTER_PORT = "clusterPort";
+    private static final String CLUSTER_START_PORT = "clusterStartPort";
+    private static final String READINESS_PATH = "readinessPath";
+    private static final String READY_TIMEOUT = "readyTimeout";
+    private static final String DEPLOYMENT_THREADS = "deploymentThreads";
+    private static final String MIN_HTTP_THREADS = "minHttpThreads";
+    private static final String MAX_HTTP_THREADS = "maxHttpThreads";
+    private static final String DRAIN_TIMEOUT = "drainTimeout";
+    private static final String BOOT_TIMINGS_REPORT = "bootTimingsReport";
+    private static final String PROFILE = "profile";
+    private static final String DEPLOYMENT_DIR = "deploymentDir";
+    private static final String DEPLOYMENT_DIR_SETTLE = "deploymentDirSettle";
+    private static final String METRICS_FILE = "metricsFile";
+    private static final String METRICS_INTERVAL = "metricsInterval";
+    private static final String ASYNC_LOG = "asyncLog";
+    private static final String LOG_TARGET = "logTarget";
+    private static final String LOG_FILE = "logFile";
+    private static final String LOG_BUFFER_SIZE = "logBufferSize";
+    private static final String LOG_OVERFLOW = "logOverflow";
+    private static final String DEPLOYMENT = "deployment.";
+    private static final String DEPENDENCY = "dependency.";
+
+    private int httpPort;
+
+    private boolean autoBindHttp;
+
+    private int autoBindRange = 5;
+
+    private int stopPort;
+
+    private int sslPort = Integer.MIN_VALUE;
+
+    private String stopCommand;
+
+    private String settings = "";
+
+    private File rootDir;
+
+    private File instanceRootCache;
+
+    private String instanceName;
+
+    private boolean noCluster = true;
+
+    private int clusterPort = Integer.MIN_VALUE;
+
+    private int clusterStartPort = Integer.MIN_VALUE;
+
+    private String readinessPath = "";
+
+    private int readyTimeout = 300;
+
+    private int deploymentThreads = 1;
+
+    private int minHttpThreads = ThreadPoolSizing.NOT_SPECIFIED;
+
+    private int maxHttpThreads = ThreadPoolSizing.NOT_SPECIFIED;
+
+    private int drainTimeout;
+
+    private File bootTimingsReport;
+
+    private BootProfile profile = BootProfile.DEFAULT;
+
+    private File deploymentDir;
+
+    private long deploymentDirSettle = 1000L;
+
+    private File metricsFile;
+
+    private int metricsInterval;
+
+    private boolean asyncLog;
+
+    private LogTarget logTarget = LogTarget.GRADLE;
+
+    private File logFile;
+
+    private int logBufferSize = 8192;
+
+    private AsyncLogHandler.Overflow logOverflow = AsyncLogHandler.Overflow.DROP;
+
+    private List<File> deployments = new ArrayList<>();
+
+    private Map<String, Set<String>> deploymentDependencies = new LinkedHashMap<>();
+
+    /**
+     * apply this spec to payara-micro.
+     * @param payaraMicro payara-micro in the child JVM.
+     * @return configured payara-micro.
+     */
+    public AlternativePayaraMicro configure(AlternativePayaraMicro payaraMicro) {
+        payaraMicro.setHttpPort(httpPort)
+                .setRootDir(rootDir)
+                .setInstanceRootCache(instanceRootCache)
+                .setNoCluster(noCluster)
+                .setDeploymentThreads(deploymentThreads)
+                .setDeploymentDependencies(deploymentDependencies);
+        payaraMicro.setAutoBindHttp(autoBindHttp);
+        payaraMicro.setAutoBindRange(autoBindRange);
+        if (instanceName != null) {
+            payaraMicro.setInstanceName(instanceName);
+        }
+        if (clusterPort != Integer.MIN_VALUE) {
+            payaraMicro.setClusterPort(clusterPort);
+        }
+        if (clusterStartPort != Integer.MIN_VALUE) {
+            payaraMicro.setClusterStartPort(clusterStartPort);
+        }
+        if (sslPort != Integer.MIN_VALUE) {
+            payaraMicro.setSslPort(sslPort);
+        }
+        if (minHttpThreads != ThreadPoolSizing.NOT_SPECIFIED) {
+            payaraMicro.setMinHttpThreads(minHttpThreads);
+        }
+        if (maxHttpThreads != ThreadPoolSizing.NOT_SPECIFIED) {
+            payaraMicro.setMaxHttpThreads(maxHttpThreads);
+        }
+        for (File deployment : deployments) {
+            payaraMicro.addDeploymentFile(deployment);
+        }
+        if (deploymentDir != null) {
+            payaraMicro.setDeploymentDir(deploymentDir)
+                    .setWatchDeploymentDir(true)
+                    .setDeploymentDirSettle(deploymentDirSettle);
+        }
+        if (asyncLog) {
+            try {
+                // standard output is forwarded to gradle's log by the parent
+                payaraMicro.setLogHandler(logTarget.createHandler(logBufferSize, logOverflow, new TextLogSink(System.out), logFile));
+            } catch (IOException e) {
+                throw new IllegalStateException(String.format("Cannot open log file %s.", logFile), e);
+            }
+        }
+        profile.applyTo(payaraMicro);
+        return payaraMicro;
+    }
+
+    public void store(File file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(HTTP_PORT, Integer.toString(httpPort));
+        props.setProperty(AUTO_BIND_HTTP, Boolean.toString(autoBindHttp));
+        props.setProperty(AUTO_BIND_RANGE, Integer.toString(autoBindRange));
+        props.setProperty(STOP_PORT, Integer.toString(stopPort));
+        props.setProperty(STOP_COMMAND, stopCommand);
+        props.setProperty(SETTINGS, settings);
+        props.setProperty(ROOT_DIR, rootDir.getAbsolutePath());
+        if (instanceRootCache != null) {
+            props.setProperty(INSTANCE_ROOT_CACHE, instanceRootCache.getAbsolutePath());
+        }
+        if (instanceName != null) {
+            props.setProperty(INSTANCE_NAME, instanceName);
+        }
+        props.setProperty(NO_CLUSTER, Boolean.toString(noCluster));
+        props.setProperty(CLUSTER_PORT, Integer.toString(clusterPort));
+        props.setProperty(CLUSTER_START_PORT, Integer.toString(clusterStartPort));
+        props.setProperty(SSL_PORT, Integer.toString(sslPort));
+        props.setProperty(READINESS_PATH, readinessPath);
+        props.setProperty(READY_TIMEOUT, Integer.toString(readyTimeout));
+        props.setProperty(DEPLOYMENT_THREADS, Integer.toString(deploymentThreads));
+        props.setProperty(MIN_HTTP_THREADS, Integer.toString(minHttpThreads));
+        props.setProperty(MAX_HTTP_THREADS, Integer.toString(maxHttpThreads));
+        props.setProperty(DRAIN_TIMEOUT, Integer.toString(drainTimeout));
+        props.setProperty(PROFILE, profile.getId());
+        if (deploymentDir != null) {
+            props.setProperty(DEPLOYMENT_DIR, deploymentDir.getAbsolutePath());
+        }
+        props.setProperty(DEPLOYMENT_DIR_SETTLE, Long.toString(deploymentDirSettle));
+        if (metricsFile != null) {
+            props.setProperty(METRICS_FILE, metricsFile.getAbsolutePath());
+        }
+        props.setProperty(METRICS_INTERVAL, Integer.toString(metricsInterval));
+        props.setProperty(ASYNC_LOG, Boolean.toString(asyncLog));
+        props.setProperty(LOG_TARGET, logTarget.toString());
+        if (logFile != null) {
+            props.setProperty(LOG_FILE, logFile.getAbsolutePath());
+        }
+        props.setProperty(LOG_BUFFER_SIZE, Integer.toString(logBufferSize));
+        props.setProperty(LOG_OVERFLOW, logOverflow.toString());
+        if (bootTimingsReport != null) {
+            props.setProperty(BOOT_TIMINGS_REPORT, bootTimingsReport.getAbsolutePath());
+        }
+        for (int i = 0; i < deployments.size(); i++) {
+            props.setProperty(DEPLOYMENT + i, deployments.get(i).getAbsolutePath());
+        }
+        for (Map.Entry<String, Set<String>> entry : deploymentDependencies.entrySet()) {
+            StringBuilder sb = new StringBuilder();
+            for (String dependency : entry.getValue()) {
+                sb.append(sb.length() == 0 ? "" : ",").append(dependency);
+            }
+            props.setProperty(DEPENDENCY + entry.getKey(), sb.toString());
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException(String.format("Cannot create directory %s.", parent));
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, "payara-micro launch spec");
+        }
+    }
+
+    public static LaunchSpec load(File file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        LaunchSpec spec = new LaunchSpec()
+                .setHttpPort(intValue(props, HTTP_PORT))
+                .setAutoBindHttp(Boolean.parseBoolean(props.getProperty(AUTO_BIND_HTTP)))
+                .setAutoBindRange(intValue(props, AUTO_BIND_RANGE))
+                .setStopPort(intValue(props, STOP_PORT))
+                .setStopCommand(props.getProperty(STOP_COMMAND))
+                .setSettings(props.getProperty(SETTINGS, ""))
+                .setRootDir(new File(props.getProperty(ROOT_DIR)))
+                .setInstanceName(props.getProperty(INSTANCE_NAME))
+                .setNoCluster(Boolean.parseBoolean(props.getProperty(NO_CLUSTER)))
+                .setClusterPort(intValue(props, CLUSTER_PORT))
+                .setClusterStartPort(intValue(props, CLUSTER_START_PORT))
+                .setSslPort(intValue(props, SSL_PORT))
+                .setReadinessPath(props.getProperty(READINESS_PATH, ""))
+                .setReadyTimeout(intValue(props, READY_TIMEOUT))
+                .setDeploymentThreads(intValue(props, DEPLOYMENT_THREADS))
+                .setHttpThreads(intValue(props, MIN_HTTP_THREADS), intValue(props, MAX_HTTP_THREADS))
+                .setDrainTimeout(intValue(props, DRAIN_TIMEOUT));
+        String cache = props.getProperty(INSTANCE_ROOT_CACHE);
+        if (cache != null) {
+            spec.setInstanceRootCache(new File(cache));
+        }
+        BootProfile profile = BootProfile.of(props.getProperty(PROFILE, BootProfile.DEFAULT.getId()));
+        if (profile == null) {
+            throw new IOException(String.format("Invalid launch spec. Unknown profile[%s].", props.getProperty(PROFILE)));
+        }
+        spec.setProfile(profile);
+        String deploymentDir = props.getProperty(DEPLOYMENT_DIR);
+        if (deploymentDir != null) {
+            spec.setDeploymentDir(new File(deploymentDir));
+        }
+        try {
+            spec.setDeploymentDirSettle(Long.parseLong(props.getProperty(DEPLOYMENT_DIR_SETTLE, "1000")));
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid launch spec. %s is not a number[%s].", DEPLOYMENT_DIR_SETTLE, props.getProperty(DEPLOYMENT_DIR_SETTLE)), e);
+        }
+        String metrics = props.getProperty(METRICS_FILE);
+        spec.setMetrics(metrics == null ? null : new File(metrics), intValue(props, METRICS_INTERVAL));
+        String logFile = props.getProperty(LOG_FILE);
+        LogTarget logTarget = LogTarget.of(props.getProperty(LOG_TARGET, LogTarget.GRADLE.toString()));
+        AsyncLogHandler.Overflow logOverflow = AsyncLogHandler.Overflow.of(props.getProperty(LOG_OVERFLOW, AsyncLogHandler.Overflow.DROP.toString()));
+        if (logTarget == null || logOverflow == null) {
+            throw new IOException(String.format("Invalid launch spec. Unknown logTarget[%s] or logOverflow[%s].",
+                    props.getProperty(LOG_TARGET), props.getProperty(LOG_OVERFLOW)));
+        }
+        spec.setAsyncLog(Boolean.parseBoolean(props.getProperty(ASYNC_LOG)), logTarget,
+                logFile == null ? null : new File(logFile), intValue(props, LOG_BUFFER_SIZE), logOverflow);
+        String report = props.getProperty(BOOT_TIMINGS_REPORT);
+        if (report != null) {
+            spec.setBootTimingsReport(new File(report));
+        }
+        for (int i = 0; props.containsKey(DEPLOYMENT + i); i++) {
+            spec.addDeployment(new File(props.getProperty(DEPLOYMENT + i)));
+        }
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(DEPENDENCY)) {
+                String value = props.getProperty(key);
+                Set<String> dependencies = new LinkedHashSet<>();
+                if (!value.isEmpty()) {
+                    dependencies.addAll(Arrays.asList(value.split(",")));
+                }
+                spec.getDeploymentDependencies().put(key.substring(DEPENDENCY.length()), dependencies);
+            }
+        }
+        return spec;
+    }
+
+    private static int intValue(Properties props, String key) throws IOException {
+        String value = props.getProperty(key);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid launch spec. %s is not a number[%s].", key, value), e);
+        }
+    }
+
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    public LaunchSpec setHttpPort(int httpPort) {
+        this.httpPort = httpPort;
+        return this;
+    }
+
+    public boolean isAutoBindHttp() {
+        return autoBindHttp;
+    }
+
+    public LaunchSpec setAutoBindHttp(boolean autoBindHttp) {
+        this.autoBindHttp = autoBindHttp;
+        return this;
+    }
+
+    public int getAutoBindRange() {
+        return autoBindRange;
+    }
+
+    public LaunchSpec setAutoBindRange(int autoBindRange) {
+        this.autoBindRange = autoBindRange;
+        return this;
+    }
+
+    public int getStopPort() {
+        return stopPort;
+    }
+
+    public LaunchSpec setStopPort(int stopPort) {
+        this.stopPort = stopPort;
+        return this;
+    }
+
+    public int getSslPort() {
+        return sslPort;
+    }
+
+    public LaunchSpec setSslPort(int sslPort) {
+        this.sslPort = sslPort;
+        return this;
+    }
+
+    public String getStopCommand() {
+        return stopCommand;
+    }
+
+    public LaunchSpec setStopCommand(String stopCommand) {
+        this.stopCommand = stopCommand;
+        return this;
+    }
+
+    public String getSettings() {
+        return settings;
+    }
+
+    public LaunchSpec setSettings(String settings) {
+        this.settings = settings;
+        return this;
+    }
+
+    public File getRootDir() {
+        return rootDir;
+    }
+
+    public LaunchSpec setRootDir(File rootDir) {
+        this.rootDir = rootDir;
+        return this;
+    }
+
+    public File getInstanceRootCache() {
+        return instanceRootCache;
+    }
+
+    public LaunchSpec setInstanceRootCache(File instanceRootCache) {
+        this.instanceRootCache = instanceRootCache;
+        return this;
+    }
+
+    public String getInstanceName() {
+        return instanceName;
+    }
+
+    public LaunchSpec setInstanceName(String instanceName) {
+        this.instanceName = instanceName;
+        return this;
+    }
+
+    public boolean isNoCluster() {
+        return noCluster;
+    }
+
+    public LaunchSpec setNoCluster(boolean noCluster) {
+        this.noCluster = noCluster;
+        return this;
+    }
+
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    public LaunchSpec setClusterPort(int clusterPort) {
+        this.clusterPort = clusterPort;
+        return this;
+    }
+
+    public int getClusterStartPort() {
+        return clusterStartPort;
+    }
+
+    public LaunchSpec setClusterStartPort(int clusterStartPort) {
+        this.clusterStartPort = clusterStartPort;
+        return this;
+    }
+
+    public String getReadinessPath() {
+        return readinessPath;
+    }
+
+    public LaunchSpec setReadinessPath(String readinessPath) {
+        this.readinessPath = readinessPath == null ? "" : readinessPath;
+        return this;
+    }
+
+    public int getReadyTimeout() {
+        return readyTimeout;
+    }
+
+    public LaunchSpec setReadyTimeout(int readyTimeout) {
+        this.readyTimeout = readyTimeout;
+        return this;
+    }
+
+    public int getDeploymentThreads() {
+        return deploymentThreads;
+    }
+
+    public LaunchSpec setDeploymentThreads(int deploymentThreads) {
+        this.deploymentThreads = deploymentThreads;
+        return this;
+    }
+
+    public int getMinHttpThreads() {
+        return minHttpThreads;
+    }
+
+    public int getMaxHttpThreads() {
+        return maxHttpThreads;
+    }
+
+    /**
+     * @param min minimum size of http-thread-pool, or {@link ThreadPoolSizing#NOT_SPECIFIED}.
+     * @param max maximum size of http-thread-pool, or {@link ThreadPoolSizing#NOT_SPECIFIED}.
+     * @return this spec.
+     */
+    public LaunchSpec setHttpThreads(int min, int max) {
+        this.minHttpThreads = min;
+        this.maxHttpThreads = max;
+        return this;
+    }
+
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * @param drainTimeout seconds to wait for in-flight requests to finish after stop command.
+     * @return this spec.
+     */
+    public LaunchSpec setDrainTimeout(int drainTimeout) {
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
+    public File getBootTimingsReport() {
+        return bootTimingsReport;
+    }
+
+    /**
+     * @param bootTimingsReport JSON file to which the child JVM writes timings of boot phases, or {@code null}.
+     * @return this spec.
+     */
+    public LaunchSpec setBootTimingsReport(File bootTimingsReport) {
+        this.bootTimingsReport = bootTimingsReport;
+        return this;
+    }
+
+    public BootProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @param profile profile applied to payara-micro after other settings.
+     * @return this spec.
+     */
+    public LaunchSpec setProfile(BootProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public File getDeploymentDir() {
+        return deploymentDir;
+    }
+
+    /**
+     * @param deploymentDir directory watched by the child JVM, from which archives are deployed live, or {@code null}.
+     * @return this spec.
+     */
+    public LaunchSpec setDeploymentDir(File deploymentDir) {
+        this.deploymentDir = deploymentDir;
+        return this;
+    }
+
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * @param metricsFile CSV file into which the child JVM samples metrics, or {@code null}.
+     * @param metricsInterval milliseconds between samples, {@code 0} disables sampling.
+     * @return this spec.
+     */
+    public LaunchSpec setMetrics(File metricsFile, int metricsInterval) {
+        this.metricsFile = metricsFile;
+        this.metricsInterval = metricsInterval;
+        return this;
+    }
+
+    public boolean isAsyncLog() {
+        return asyncLog;
+    }
+
+    /**
+     * @param asyncLog if {@code true}, the child JVM forwards payara-micro's log through a bounded buffer.
+     * @param logTarget where the log is forwarded, standard output for {@link LogTarget#GRADLE}.
+     * @param logFile rolling log file, or {@code null} for {@link LogTarget#GRADLE}.
+     * @param logBufferSize number of records buffered.
+     * @param logOverflow policy when the buffer is full.
+     * @return this spec.
+     */
+    public LaunchSpec setAsyncLog(boolean asyncLog, LogTarget logTarget, File logFile, int logBufferSize, AsyncLogHandler.Overflow logOverflow) {
+        this.asyncLog = asyncLog;
+        this.logTarget = logTarget;
+        this.logFile = logFile;
+        this.logBufferSize = logBufferSize;
+        this.logOverflow = logOverflow;
+        return this;
+    }
+
+    public long getDeploymentDirSettle() {
+        return deploymentDirSettle;
+    }
+
+    /**
+     * @param deploymentDirSettle milliseconds in which an archive in deployment directory should not change before it is deployed.
+     * @return this spec.
+     */
+    public LaunchSpec setDeploymentDirSettle(long deploymentDirSettle) {
+        this.deploymentDirSettle = deploymentDirSettle;
+        return this;
+    }
+
+    public Map<String, Set<String>> getDeploymentDependencies() {
+        return deploymentDependencies;
+    }
+
+    public LaunchSpec setDeploymentDependencies(Map<String, Set<String>> deploymentDependencies) {
+        this.deploymentDependencies = new LinkedHashMap<>(deploymentDependencies);
+        return this;
+    }
+
+    public List<File> getDeployments() {
+        return deployments;
+    }
+
+    public LaunchSpec addDeployment(File deployment) {
+        deployments.add(deployment.getAbsoluteFile());
+        return this;
+    }
+}
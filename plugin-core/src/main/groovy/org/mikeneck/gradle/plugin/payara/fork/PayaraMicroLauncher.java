@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.fork;
+
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.micro.BootTimings;
+import org.mikeneck.gradle.plugin.payara.micro.ResidentMemory;
+import org.mikeneck.gradle.plugin.payara.server.Lifecycle;
+import org.mikeneck.gradle.plugin.payara.server.LifecycleState;
+import org.mikeneck.gradle.plugin.payara.server.PayaraMicroServer;
+import org.mikeneck.gradle.plugin.payara.server.ReadinessProbe;
+import org.mikeneck.gradle.plugin.payara.server.StopServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of a child JVM which runs payara-micro with {@link StopServer}.
+ * <p>
+ * The only argument is a path to {@link LaunchSpec} file.
+ * The launcher reports its state to the parent by lines starting with {@link #MARKER} on standard output,
+ * which are read by {@link ForkedPayaraMicro}.
+ */
+public final class PayaraMicroLauncher {
+
+    /**
+     * number of the slowest phases shown in boot timings summary.
+     */
+    private static final int BOOT_TIMINGS_SUMMARY = 3;
+
+    public static final String MARKER = "payara-launcher: ";
+
+    public static final String READY = "READY";
+
+    public static final String FAILED = "FAILED";
+
+    public static final String STOPPED = "STOPPED";
+
+    private PayaraMicroLauncher() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: PayaraMicroLauncher <launch spec file>");
+            System.exit(2);
+        }
+        final LaunchSpec spec = LaunchSpec.load(new File(args[0]));
+        final PrintStream out = System.out;
+        CountDownLatch latch = new CountDownLatch(1);
+        final PayaraMicroServer payaraServer = new PayaraMicroServer(latch) {
+            @Override
+            protected AlternativePayaraMicro createPayaraMicro() {
+                return spec.configure(AlternativePayaraMicro.getInstance());
+            }
+        };
+        payaraServer.setDrainTimeout(TimeUnit.SECONDS.toMillis(spec.getDrainTimeout()));
+        payaraServer.setMetrics(spec.getMetricsFile(), spec.getMetricsInterval());
+        if (!spec.getReadinessPath().isEmpty()) {
+            payaraServer.setReadinessProbe(new ReadinessProbe(spec.getReadinessPath(), TimeUnit.SECONDS.toMillis(spec.getReadyTimeout())));
+        }
+        final StopServer stopServer;
+        try {
+            stopServer = new StopServer(spec.getStopPort(), spec.getStopCommand(), latch, spec.getSettings(), payaraServer);
+        } catch (IOException e) {
+            report(out, FAILED, String.format("StopServer is not available on port %d: %s", spec.getStopPort(), e.getMessage()));
+            System.exit(1);
+            return;
+        }
+        payaraServer.getLifecycle().addListener(new Lifecycle.Listener() {
+            @Override
+            public void onChange(LifecycleState state) {
+                switch (state) {
+                    case READY:
+                        reportBootTimings(out, spec, payaraServer.getBootTimings());
+                        report(out, READY, AlternativePayaraMicro.getInstance().getBoundHttpPort() + " " + ResidentMemory.currentKb());
+                        break;
+                    case STOPPED:
+                        closeQuietly(stopServer);
+                        if (payaraServer.getMetricsSummary() != null) {
+                            out.println(payaraServer.getMetricsSummary());
+                        }
+                        report(out, STOPPED, "");
+                        System.exit(0);
+                        break;
+                    case FAILED:
+                        closeQuietly(stopServer);
+                        Throwable failure = payaraServer.getLifecycle().getFailure();
+                        report(out, FAILED, failure == null ? "" : String.valueOf(failure.getMessage()));
+                        System.exit(1);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+        Thread stopThread = new Thread(stopServer, "payara-launcher-stop-server");
+        stopThread.setDaemon(true);
+        stopThread.start();
+        new Thread(payaraServer, "payara-launcher-payara-micro").start();
+    }
+
+    private static void reportBootTimings(PrintStream out, LaunchSpec spec, BootTimings timings) {
+        out.println("Boot timings: " + timings.summary(BOOT_TIMINGS_SUMMARY));
+        if (spec.getBootTimingsReport() == null) {
+            return;
+        }
+        try {
+            timings.writeJson(spec.getBootTimingsReport());
+        } catch (IOException e) {
+            System.err.println("Fail to write boot timings to " + spec.getBootTimingsReport() + ": " + e.getMessage());
+        }
+    }
+
+    private static void report(PrintStream out, String state, String detail) {
+        synchronized (out) {
+            out.println(MARKER + state + " " + detail);
+            out.flush();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            System.err.println("An error has occurred while closing " + closeable + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.load;
+
+/**
+ * Log-linear histogram of latencies in microseconds.
+ * Values are recorded with relative error less than 1%({@value #SUB_BUCKET_BITS} bits of sub buckets in each power of two).
+ * This class is not thread safe, each worker records to its own histogram and they are merged by {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * highest bit of recordable value(about 12 days in microseconds).
+     */
+    private static final int MAX_MAGNITUDE = 40;
+
+    private final long[] counts = new long[(MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS];
+
+    private long count;
+
+    private long sum;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max;
+
+    public void record(long micros) {
+        long value = Math.max(0L, micros);
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100.
+     * @return the highest value equivalent to the value at percentile, or 0 if nothing is recorded.
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highestValueAt(i));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0L : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = Math.min(MAX_MAGNITUDE, 63 - Long.numberOfLeadingZeros(value));
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) ((Math.min(value, (1L << (MAX_MAGNITUDE + 1)) - 1) >> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub) << shift) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives HTTP traffic with a number of concurrent connections.
+ * <ul>
+ *     <li>closed loop(rate is 0) - each connection sends next request as soon as previous response comes.</li>
+ *     <li>open loop(rate is positive) - requests are sent on schedule of the rate,
+ *     and latency is measured from scheduled time so that a slow response doesn't hide queueing delay.</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private static final int READ_TIMEOUT = 30000;
+
+    private final List<URL> urls;
+
+    private final int connections;
+
+    private final long duration;
+
+    private final int rate;
+
+    private final boolean keepAlive;
+
+    /**
+     * @param urls urls to be requested in round robin.
+     * @param connections number of concurrent connections.
+     * @param duration milliseconds to drive traffic.
+     * @param rate requests per second over all connections, 0 means closed loop.
+     * @param keepAlive whether connections are kept alive.
+     */
+    public LoadGenerator(List<URL> urls, int connections, long duration, int rate, boolean keepAlive) {
+        this.urls = urls;
+        this.connections = connections;
+        this.duration = duration;
+        this.rate = rate;
+        this.keepAlive = keepAlive;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(connections, threadFactory());
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(duration);
+        List<Future<Worker>> futures = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                futures.add(executor.submit(new Worker(i, start, deadline)));
+            }
+            LoadReport report = new LoadReport(urls, connections, rate, keepAlive);
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                report.add(worker.histogram, worker.errors, worker.statusErrors);
+            }
+            report.setElapsed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return report;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load generator worker failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "payara-load-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private class Worker implements Callable<Worker> {
+
+        private final int id;
+
+        private final long start;
+
+        private final long deadline;
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private final byte[] buffer = new byte[8192];
+
+        private long errors;
+
+        private long statusErrors;
+
+        Worker(int id, long start, long deadline) {
+            this.id = id;
+            this.start = start;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Worker call() throws Exception {
+            // each connection takes every n-th slot of the schedule in open loop
+            long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(connections) / rate : 0L;
+            long scheduled = start + (rate > 0 ? interval * id / connections : 0L);
+            long sequence = id;
+            while (!Thread.currentThread().isInterrupted()) {
+                long now = System.nanoTime();
+                if (rate > 0) {
+                    if (scheduled - now > 0L) {
+                        TimeUnit.NANOSECONDS.sleep(scheduled - now);
+                    }
+                } else {
+                    scheduled = now;
+                }
+                if (scheduled - deadline >= 0L) {
+                    break;
+                }
+                URL url = urls.get((int) (sequence++ % urls.size()));
+                int status = request(url);
+                if (status < 0) {
+                    errors++;
+                } else if (status >= 400) {
+                    statusErrors++;
+                } else {
+                    histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled));
+                }
+                scheduled += interval;
+            }
+            return this;
+        }
+
+        private int request(URL url) {
+            HttpURLConnection con = null;
+            try {
+                con = (HttpURLConnection) url.openConnection();
+                con.setConnectTimeout(CONNECT_TIMEOUT);
+                con.setReadTimeout(READ_TIMEOUT);
+                if (!keepAlive) {
+                    con.setRequestProperty("Connection", "close");
+                }
+                int status = con.getResponseCode();
+                // read whole body so that the connection can be reused
+                drain(status < 400 ? con.getInputStream() : con.getErrorStream());
+                return status;
+            } catch (IOException e) {
+                LOG.debug("Request to {} failed: {}", url, e.getMessage());
+                return -1;
+            } finally {
+                if (con != null && !keepAlive) {
+                    con.disconnect();
+                }
+            }
+        }
+
+        private void drain(InputStream stream) throws IOException {
+            if (stream == null) {
+                return;
+            }
+            try (InputStream in = stream) {
+                while (in.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.load;
+
+import org.mikeneck.gradle.plugin.payara.server.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result of {@link LoadGenerator}.
+ */
+public class LoadReport {
+
+    private final List<URL> urls;
+
+    private final int connections;
+
+    private final int rate;
+
+    private final boolean keepAlive;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private long errors;
+
+    private long statusErrors;
+
+    private long elapsed;
+
+    LoadReport(List<URL> urls, int connections, int rate, boolean keepAlive) {
+        this.urls = urls;
+        this.connections = connections;
+        this.rate = rate;
+        this.keepAlive = keepAlive;
+    }
+
+    void add(LatencyHistogram worker, long errors, long statusErrors) {
+        histogram.add(worker);
+        this.errors += errors;
+        this.statusErrors += statusErrors;
+    }
+
+    void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return successful requests per second.
+     */
+    public double getThroughput() {
+        return elapsed == 0 ? 0.0 : histogram.getCount() * 1000.0 / elapsed;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @return requests failed with I/O error.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return requests answered with status 4xx or 5xx.
+     */
+    public long getStatusErrors() {
+        return statusErrors;
+    }
+
+    public String summary() {
+        return String.format(Locale.ROOT,
+                "%d requests in %d ms, %.1f req/s, latency(ms) p50 %.3f / p99 %.3f / p99.9 %.3f / max %.3f, errors %d, error statuses %d",
+                histogram.getCount(), elapsed, getThroughput(),
+                millis(histogram.percentile(50.0)), millis(histogram.percentile(99.0)),
+                millis(histogram.percentile(99.9)), millis(histogram.getMax()),
+                errors, statusErrors);
+    }
+
+    public void writeJson(File file) throws IOException {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"urls\": [");
+        String separator = "";
+        for (URL url : urls) {
+            sb.append(separator).append(Json.quote(url.toExternalForm()));
+            separator = ", ";
+        }
+        sb.append("],\n");
+        sb.append("  \"connections\": ").append(connections).append(",\n");
+        sb.append("  \"rate\": ").append(rate).append(",\n");
+        sb.append("  \"keepAlive\": ").append(keepAlive).append(",\n");
+        sb.append("  \"elapsedMillis\": ").append(elapsed).append(",\n");
+        sb.append("  \"requests\": ").append(histogram.getCount()).append(",\n");
+        sb.append("  \"errors\": ").append(errors).append(",\n");
+        sb.append("  \"statusErrors\": ").append(statusErrors).append(",\n");
+        sb.append(String.format(Locale.ROOT, "  \"throughput\": %.3f,%n", getThroughput()));
+        sb.append("  \"latencyMicros\": {\n");
+        sb.append("    \"min\": ").append(histogram.getMin()).append(",\n");
+        sb.append(String.format(Locale.ROOT, "    \"mean\": %.3f,%n", histogram.getMean()));
+        sb.append("    \"p50\": ").append(histogram.percentile(50.0)).append(",\n");
+        sb.append("    \"p90\": ").append(histogram.percentile(90.0)).append(",\n");
+        sb.append("    \"p99\": ").append(histogram.percentile(99.0)).append(",\n");
+        sb.append("    \"p99.9\": ").append(histogram.percentile(99.9)).append(",\n");
+        sb.append("    \"max\": ").append(histogram.getMax()).append("\n");
+        sb.append("  }\n}\n");
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            Files.createDirectories(dir.toPath());
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(sb.toString());
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * JUL handler which never blocks logging threads(e.g. request threads of payara-micro).
+ * <p>
+ * Records are put into a bounded buffer, and a consumer thread forwards them to {@link LogSink}s.
+ * When the buffer is full, records are dropped and counted. With {@link Overflow#SAMPLE},
+ * records below {@link Level#WARNING} are sampled already when the buffer is filled over {@link #HIGH_WATER_PERCENT} percent,
+ * so that warnings and errors are more likely to find room.
+ * The number of dropped records is reported through sinks periodically and when the handler is closed.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * policy when the buffer is (nearly) full.
+     */
+    public enum Overflow {
+        DROP("drop"),
+        SAMPLE("sample");
+
+        private final String id;
+
+        Overflow(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @param id id of policy.
+         * @return policy of the id, or {@code null} if unknown.
+         */
+        public static Overflow of(String id) {
+            for (Overflow overflow : values()) {
+                if (overflow.id.equals(id)) {
+                    return overflow;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+
+    static final int HIGH_WATER_PERCENT = 75;
+
+    /**
+     * one of this number of records below warning is kept while the buffer is over high water mark.
+     */
+    static final int SAMPLE_RATE = 10;
+
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private static final LogRecord END = new LogRecord(Level.OFF, "end of log");
+
+    private final BlockingQueue<LogRecord> buffer;
+
+    private final int highWater;
+
+    private final Overflow overflow;
+
+    private final List<LogSink> sinks;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong sampled = new AtomicLong();
+
+    private final Thread consumer;
+
+    private volatile boolean closed;
+
+    private long reportedDropped;
+
+    /**
+     * @param capacity number of records which can be buffered.
+     * @param overflow policy when the buffer is full.
+     * @param sinks destinations of records.
+     */
+    public AsyncLogHandler(int capacity, Overflow overflow, LogSink... sinks) {
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.highWater = Math.max(1, capacity * HIGH_WATER_PERCENT / 100);
+        this.overflow = overflow;
+        this.sinks = new ArrayList<>(Arrays.asList(sinks));
+        setFormatter(new SimpleFormatter());
+        this.consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "payara-async-log");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        if (overflow == Overflow.SAMPLE && buffer.size() >= highWater && record.getLevel().intValue() < Level.WARNING.intValue()
+                && sampled.incrementAndGet() % SAMPLE_RATE != 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (!buffer.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void consume() {
+        long nextReport = System.currentTimeMillis() + REPORT_INTERVAL;
+        try {
+            while (true) {
+                LogRecord record = buffer.poll(REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+                if (record == END) {
+                    break;
+                }
+                if (record != null) {
+                    forward(record, getFormatter().formatMessage(record));
+                }
+                if (System.currentTimeMillis() >= nextReport) {
+                    reportDropped();
+                    nextReport = System.currentTimeMillis() + REPORT_INTERVAL;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reportDropped();
+    }
+
+    private void forward(LogRecord record, String message) {
+        for (LogSink sink : sinks) {
+            try {
+                sink.write(record, message);
+            } catch (IOException | RuntimeException e) {
+                reportError("Fail to forward log record.", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total == reportedDropped) {
+            return;
+        }
+        String message = String.format("%d log records have been dropped because log buffer was full(%d in total).", total - reportedDropped, total);
+        reportedDropped = total;
+        LogRecord record = new LogRecord(Level.WARNING, message);
+        record.setLoggerName(AsyncLogHandler.class.getName());
+        forward(record, message);
+    }
+
+    /**
+     * @return number of records dropped so far.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * forward buffered records and close sinks. Records published after this method are ignored.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.offer(END, CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+            consumer.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                reportError("Fail to close log sink.", e, ErrorManager.CLOSE_FAILURE);
+            }
+        }
+    }
+}
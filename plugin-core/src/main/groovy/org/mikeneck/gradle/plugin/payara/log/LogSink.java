@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.log;
+
+import java.io.IOException;
+import java.util.logging.LogRecord;
+
+/**
+ * Destination of log records forwarded by {@link AsyncLogHandler}. Sinks are called only from the consumer thread.
+ */
+public interface LogSink {
+
+    /**
+     * @param record log record.
+     * @param message formatted message of the record.
+     * @throws IOException when the record cannot be written.
+     */
+    void write(LogRecord record, String message) throws IOException;
+
+    /**
+     * flush and release resources.
+     * @throws IOException when the sink cannot be closed.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where {@link AsyncLogHandler} forwards payara-micro's log.
+ */
+public enum LogTarget {
+    GRADLE("gradle", true, false),
+    FILE("file", false, true),
+    BOTH("both", true, true);
+
+    /**
+     * size of log file at which it is rolled.
+     */
+    static final long MAX_FILE_BYTES = 10L * 1024L * 1024L;
+
+    /**
+     * number of rolled log files to be kept.
+     */
+    static final int MAX_FILES = 5;
+
+    private final String id;
+
+    private final boolean gradle;
+
+    private final boolean file;
+
+    LogTarget(String id, boolean gradle, boolean file) {
+        this.id = id;
+        this.gradle = gradle;
+        this.file = file;
+    }
+
+    /**
+     * @param id id of target.
+     * @return target of the id, or {@code null} if unknown.
+     */
+    public static LogTarget of(String id) {
+        for (LogTarget target : values()) {
+            if (target.id.equals(id)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param capacity number of records which can be buffered.
+     * @param overflow policy when the buffer is full.
+     * @param gradleSink sink which reaches gradle's log, {@link Slf4jLogSink} in gradle's JVM and standard output in a forked JVM.
+     * @param logFile rolling log file, used unless this target is {@link #GRADLE}.
+     * @return handler forwarding records to this target.
+     * @throws IOException when log file cannot be opened.
+     */
+    public AsyncLogHandler createHandler(int capacity, AsyncLogHandler.Overflow overflow, LogSink gradleSink, File logFile) throws IOException {
+        List<LogSink> sinks = new ArrayList<>(2);
+        if (gradle) {
+            sinks.add(gradleSink);
+        }
+        if (file) {
+            sinks.add(new TextLogSink(logFile, MAX_FILE_BYTES, MAX_FILES));
+        }
+        return new AsyncLogHandler(capacity, overflow, sinks.toArray(new LogSink[sinks.size()]));
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Forwards records to slf4j loggers of the same names, which are gradle's loggers when payara-micro runs in gradle's JVM.
+ */
+public class Slf4jLogSink implements LogSink {
+
+    @Override
+    public void write(LogRecord record, String message) {
+        Logger logger = LoggerFactory.getLogger(record.getLoggerName() == null ? "" : record.getLoggerName());
+        int level = record.getLevel().intValue();
+        Throwable thrown = record.getThrown();
+        if (level >= Level.SEVERE.intValue()) {
+            logger.error(message, thrown);
+        } else if (level >= Level.WARNING.intValue()) {
+            logger.warn(message, thrown);
+        } else if (level >= Level.INFO.intValue()) {
+            logger.info(message, thrown);
+        } else if (level >= Level.FINE.intValue()) {
+            logger.debug(message, thrown);
+        } else {
+            logger.trace(message, thrown);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
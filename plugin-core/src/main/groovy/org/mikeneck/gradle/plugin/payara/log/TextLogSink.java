@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.LogRecord;
+
+/**
+ * Writes records as text lines, into a print stream(standard output of a forked JVM) or into a file rolled by size.
+ */
+public class TextLogSink implements LogSink {
+
+    private final File file;
+
+    private final long maxBytes;
+
+    private final int maxFiles;
+
+    private Writer writer;
+
+    private long written;
+
+    /**
+     * @param stream stream to which records are written, which is not closed by this sink.
+     */
+    public TextLogSink(PrintStream stream) {
+        this.file = null;
+        this.maxBytes = Long.MAX_VALUE;
+        this.maxFiles = 0;
+        this.writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param file log file. when it grows over {@code maxBytes}, it is renamed to {@code file.1}(and {@code file.1} to {@code file.2}, ...).
+     * @param maxBytes size of a file at which it is rolled.
+     * @param maxFiles number of rolled files to be kept.
+     * @throws IOException when the file cannot be opened.
+     */
+    public TextLogSink(File file, long maxBytes, int maxFiles) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        open();
+    }
+
+    private void open() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+        written = file.length();
+    }
+
+    @Override
+    public void write(LogRecord record, String message) throws IOException {
+        StringBuilder sb = new StringBuilder(String.format("%1$tF %1$tT.%1$tL %2$-7s [%3$s] %4$s%n",
+                record.getMillis(), record.getLevel().getName(), record.getLoggerName(), message));
+        if (record.getThrown() != null) {
+            StringWriter trace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(trace));
+            sb.append(trace);
+        }
+        String line = sb.toString();
+        if (file != null && written > 0L && written + line.length() > maxBytes) {
+            roll();
+        }
+        writer.write(line);
+        writer.flush();
+        written += line.length();
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File from = new File(file.getPath() + "." + i);
+            if (from.exists()) {
+                Files.move(from.toPath(), new File(file.getPath() + "." + (i + 1)).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(file.toPath(), new File(file.getPath() + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file.toPath());
+        }
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file == null) {
+            writer.flush();
+        } else {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Ports reserved in {@link PortRegistry} for one payara-micro, which are written to a properties file
+ * so that following tasks(and builds) find the instance.
+ */
+public class AllocatedPorts {
+
+    public static final String HTTP = "httpPort";
+
+    public static final String SSL = "sslPort";
+
+    public static final String STOP = "stopPort";
+
+    public static final String CLUSTER = "clusterPort";
+
+    private static final String OWNER = "owner";
+
+    private static final String REGISTRY = "registry";
+
+    private final String owner;
+
+    private final File registry;
+
+    private final int httpPort;
+
+    private final int sslPort;
+
+    private final int stopPort;
+
+    private final int clusterPort;
+
+    public AllocatedPorts(String owner, File registry, int httpPort, int sslPort, int stopPort, int clusterPort) {
+        this.owner = owner;
+        this.registry = registry;
+        this.httpPort = httpPort;
+        this.sslPort = sslPort;
+        this.stopPort = stopPort;
+        this.clusterPort = clusterPort;
+    }
+
+    /**
+     * @param file properties file written by {@link #store(File)}.
+     * @return ports in the file, or {@code null} if the file does not exist.
+     * @throws IOException when the file cannot be read or has no ports.
+     */
+    public static AllocatedPorts load(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            props.load(in);
+        }
+        try {
+            return new AllocatedPorts(props.getProperty(OWNER), new File(props.getProperty(REGISTRY)),
+                    Integer.parseInt(props.getProperty(HTTP)),
+                    Integer.parseInt(props.getProperty(SSL)),
+                    Integer.parseInt(props.getProperty(STOP)),
+                    Integer.parseInt(props.getProperty(CLUSTER)));
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IOException(String.format("%s is not a valid ports file.", file), e);
+        }
+    }
+
+    public void store(File file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(OWNER, owner);
+        props.setProperty(REGISTRY, registry.getAbsolutePath());
+        props.setProperty(HTTP, Integer.toString(httpPort));
+        props.setProperty(SSL, Integer.toString(sslPort));
+        props.setProperty(STOP, Integer.toString(stopPort));
+        props.setProperty(CLUSTER, Integer.toString(clusterPort));
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            props.store(out, "ports reserved for payara-micro");
+        }
+    }
+
+    /**
+     * give the ports back to the registry.
+     * @throws IOException when the registry cannot be updated.
+     */
+    public void release() throws IOException {
+        new PortRegistry(registry).release(owner);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    public int getSslPort() {
+        return sslPort;
+    }
+
+    public int getStopPort() {
+        return stopPort;
+    }
+
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("http=%d,ssl=%d,stop=%d,cluster=%d", httpPort, sslPort, stopPort, clusterPort);
+    }
+}
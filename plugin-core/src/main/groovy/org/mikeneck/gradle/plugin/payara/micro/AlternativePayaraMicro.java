@@ -21,6 +21,7 @@ import fish.payara.micro.PortBinder;
 import fish.payara.nucleus.hazelcast.HazelcastCore;
 import fish.payara.nucleus.hazelcast.MulticastConfiguration;
 import org.glassfish.embeddable.BootstrapProperties;
+import org.glassfish.embeddable.CommandResult;
 import org.glassfish.embeddable.Deployer;
 import org.glassfish.embeddable.GlassFish;
 import org.glassfish.embeddable.GlassFish.Status;
@@ -33,19 +34,25 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.BindException;
-import java.net.MalformedURLException;
-import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
 import java.util.logging.LogManager;
 
-import static com.sun.enterprise.glassfish.bootstrap.StaticGlassFishRuntime.copy;
-
 public class AlternativePayaraMicro {
 
     private static final Logger logger = LoggerFactory.getLogger(AlternativePayaraMicro.class);
@@ -58,33 +65,62 @@ public class AlternativePayaraMicro {
 
     private static final String MIN_HTTP_THREADS = "embedded-glassfish-config.server.thread-pools.thread-pool.http-thread-pool.min-thread-pool-size";
 
+    private static final String MONITORING_ENABLED = "embedded-glassfish-config.server.monitoring-service.monitoring-enabled";
+
+    private static final String HTTP_SERVICE_MONITORING = "embedded-glassfish-config.server.monitoring-service.module-monitoring-levels.http-service";
+
+    private static final String LISTENER_ENABLED = "embedded-glassfish-config.server.network-config.network-listeners.network-listener.%s.enabled";
+
+    private static final String GRIZZLY_SERVICE = "com.sun.enterprise.v3.services.impl.GrizzlyService";
+
+    /**
+     * monitoring statistic of requests processed by the default virtual server.
+     */
+    private static final String REQUEST_COUNT = "server.http-service.server.request.requestcount-count";
+
     private static AlternativePayaraMicro instance;
 
     private String clusterMulticastGroup;
     private int clusterPort = Integer.MIN_VALUE;
     private int clusterStartPort = Integer.MIN_VALUE;
     private int httpPort = Integer.MIN_VALUE;
+    private int boundHttpPort = Integer.MIN_VALUE;
     private int sslPort = Integer.MIN_VALUE;
     private int maxHttpThreads = Integer.MIN_VALUE;
     private int minHttpThreads = Integer.MIN_VALUE;
     private String instanceName = UUID.randomUUID().toString();
     private File rootDir;
+    private File instanceRootCache;
     private File deploymentDir;
+    private boolean watchDeploymentDir = false;
+    private long deploymentDirSettle = 1000L;
+    private DeploymentDirWatcher deploymentDirWatcher;
     private File alternateDomainXML;
     private File alternateHZConfigFile;
     private List<File> deployments;
+    private final Map<String, String> deployedApplications = new LinkedHashMap<>();
+    private final Map<String, String> deployedHashes = new LinkedHashMap<>();
+    private final Map<String, String> contextRoots = new LinkedHashMap<>();
+    private int deploymentThreads = 1;
+    private Map<String, Set<String>> deploymentDependencies = Collections.emptyMap();
     private GlassFish gf;
     private PayaraMicroRuntime runtime;
     private boolean noCluster = false;
+    private boolean resetLogManager = true;
+    private final Map<String, String> configOverrides = new LinkedHashMap<>();
+    private Handler logHandler;
+    private Handler[] replacedLogHandlers;
     private boolean autoBindHttp = false;
     private boolean autoBindSsl = false;
     private int autoBindRange = 5;
+    private BootTimings bootTimings = new BootTimings();
+    private Thread shutdownHook;
 
     public static AlternativePayaraMicro getInstance() {
         return getInstance(true);
     }
 
-    public static AlternativePayaraMicro getInstance(boolean create) {
+    public static synchronized AlternativePayaraMicro getInstance(boolean create) {
         if (instance == null && create) {
             instance = new AlternativePayaraMicro();
         }
@@ -96,22 +132,65 @@ public class AlternativePayaraMicro {
     }
 
     private AlternativePayaraMicro() {
-        addShutdownHook();
     }
 
+    /**
+     * release the singleton if any and shut down the pooled {@link GlassFishRuntime},
+     * so that no GlassFish instance, thread or class loader of payara-micro stays in this JVM.
+     */
+    public static void reset() {
+        AlternativePayaraMicro current = getInstance(false);
+        if (current != null) {
+            current.release();
+        }
+        GlassFishRuntimePool.evict();
+    }
+
+    /**
+     * register a hook disposing GlassFish at JVM exit, which is removed by {@link #release()}
+     * so that hooks don't pile up(and retain GlassFish) in a long-lived JVM.
+     */
     private void addShutdownHook() {
-        Runtime.getRuntime().addShutdownHook(new Thread("GlassFish Shutdown Hook") {
-            @Override
-            public void run() {
-                try {
-                    if (gf != null) {
-                        gf.stop();
-                        gf.dispose();
-                    }
-                } catch (GlassFishException ignore) {
+        shutdownHook = new DisposeHook(gf);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private void removeShutdownHook() {
+        if (shutdownHook == null) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            logger.debug("JVM is shutting down, shutdown hook is kept.");
+        }
+        shutdownHook = null;
+    }
+
+    /**
+     * holds GlassFish only, not payara-micro, to keep a registered hook small.
+     */
+    private static class DisposeHook extends Thread {
+
+        private final GlassFish glassFish;
+
+        DisposeHook(GlassFish glassFish) {
+            super("GlassFish Shutdown Hook");
+            this.glassFish = glassFish;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (glassFish.getStatus() == Status.STARTED) {
+                    glassFish.stop();
                 }
+                if (glassFish.getStatus() != Status.DISPOSED) {
+                    glassFish.dispose();
+                }
+            } catch (GlassFishException ignore) {
             }
-        });
+        }
     }
 
     private void verifyPayaraMicroIsNotRunning() throws IllegalStateException {
@@ -160,6 +239,13 @@ public class AlternativePayaraMicro {
         return this;
     }
 
+    /**
+     * @return http port to which payara-micro is bound, which may differ from {@link #getHttpPort()} with auto binding.
+     */
+    public int getBoundHttpPort() {
+        return boundHttpPort;
+    }
+
     public int getSslPort() {
         return sslPort;
     }
@@ -190,6 +276,36 @@ public class AlternativePayaraMicro {
         return this;
     }
 
+    public boolean isWatchDeploymentDir() {
+        return watchDeploymentDir;
+    }
+
+    /**
+     * @param watchDeploymentDir {@code true} keeps watching {@link #deploymentDir} after boot,
+     *                           and deploys, redeploys or undeploys archives as they are added, changed or deleted.
+     * @return this.
+     */
+    public AlternativePayaraMicro setWatchDeploymentDir(boolean watchDeploymentDir) {
+        verifyPayaraMicroIsNotRunning();
+        this.watchDeploymentDir = watchDeploymentDir;
+        return this;
+    }
+
+    public long getDeploymentDirSettle() {
+        return deploymentDirSettle;
+    }
+
+    /**
+     * @param deploymentDirSettle milliseconds in which size and last modified time of an archive in {@link #deploymentDir}
+     *                            should not change before it is deployed.
+     * @return this.
+     */
+    public AlternativePayaraMicro setDeploymentDirSettle(long deploymentDirSettle) {
+        verifyPayaraMicroIsNotRunning();
+        this.deploymentDirSettle = deploymentDirSettle;
+        return this;
+    }
+
     public File getAlternateDomainXML() {
         return alternateDomainXML;
     }
@@ -216,6 +332,50 @@ public class AlternativePayaraMicro {
         return this;
     }
 
+    public boolean isResetLogManager() {
+        return resetLogManager;
+    }
+
+    /**
+     * @param resetLogManager {@code false} skips reading JUL configuration of the instance root again after GlassFish is created.
+     * @return this.
+     */
+    public AlternativePayaraMicro setResetLogManager(boolean resetLogManager) {
+        verifyPayaraMicroIsNotRunning();
+        this.resetLogManager = resetLogManager;
+        return this;
+    }
+
+    public Handler getLogHandler() {
+        return logHandler;
+    }
+
+    /**
+     * @param logHandler handler which replaces handlers of JUL root logger while payara-micro runs, {@code null} keeps them.
+     *                   it is closed when payara-micro is shut down.
+     * @return this.
+     */
+    public AlternativePayaraMicro setLogHandler(Handler logHandler) {
+        verifyPayaraMicroIsNotRunning();
+        this.logHandler = logHandler;
+        return this;
+    }
+
+    public Map<String, String> getConfigOverrides() {
+        return Collections.unmodifiableMap(configOverrides);
+    }
+
+    /**
+     * @param key domain configuration property, starting with {@code embedded-glassfish-config.}.
+     * @param value value of the property.
+     * @return this.
+     */
+    public AlternativePayaraMicro addConfigOverride(String key, String value) {
+        verifyPayaraMicroIsNotRunning();
+        configOverrides.put(key, value);
+        return this;
+    }
+
     public AlternativePayaraMicro addDeploymentFile(File file) {
         verifyPayaraMicroIsNotRunning();
         if (deployments == null) {
@@ -225,6 +385,34 @@ public class AlternativePayaraMicro {
         return this;
     }
 
+    public int getDeploymentThreads() {
+        return deploymentThreads;
+    }
+
+    /**
+     * @param deploymentThreads number of threads to deploy archives concurrently, 1 deploys them one by one.
+     * @return this object.
+     */
+    public AlternativePayaraMicro setDeploymentThreads(int deploymentThreads) {
+        verifyPayaraMicroIsNotRunning();
+        this.deploymentThreads = deploymentThreads;
+        return this;
+    }
+
+    public Map<String, Set<String>> getDeploymentDependencies() {
+        return deploymentDependencies;
+    }
+
+    /**
+     * @param deploymentDependencies archive names(file name without extension) to names of archives on which they depend.
+     * @return this object.
+     */
+    public AlternativePayaraMicro setDeploymentDependencies(Map<String, Set<String>> deploymentDependencies) {
+        verifyPayaraMicroIsNotRunning();
+        this.deploymentDependencies = deploymentDependencies;
+        return this;
+    }
+
     public int getMaxHttpThreads() {
         return maxHttpThreads;
     }
@@ -255,6 +443,34 @@ public class AlternativePayaraMicro {
         return this;
     }
 
+    public File getInstanceRootCache() {
+        return instanceRootCache;
+    }
+
+    /**
+     * @param instanceRootCache directory in which installed instance roots are cached, {@code null} disables cache.
+     * @return this object.
+     */
+    public AlternativePayaraMicro setInstanceRootCache(File instanceRootCache) {
+        verifyPayaraMicroIsNotRunning();
+        this.instanceRootCache = instanceRootCache;
+        return this;
+    }
+
+    public BootTimings getBootTimings() {
+        return bootTimings;
+    }
+
+    /**
+     * @param bootTimings timings to which boot phases are recorded.
+     * @return this object.
+     */
+    public AlternativePayaraMicro setBootTimings(BootTimings bootTimings) {
+        verifyPayaraMicroIsNotRunning();
+        this.bootTimings = bootTimings;
+        return this;
+    }
+
     public boolean isAutoBindHttp() {
         return autoBindHttp;
     }
@@ -283,6 +499,10 @@ public class AlternativePayaraMicro {
         if (runtime != null) {
             throw new IllegalStateException("Payara Micro is already running, calling bootstrap now is meaningless.");
         }
+        // fail before booting if archives would be deployed as the same application
+        final List<File> archives = collectArchives();
+        ParallelDeployer.byName(archives);
+        long mark = bootTimings.start();
         if (!noCluster) {
             MulticastConfiguration mc = new MulticastConfiguration();
             mc.setMemberName(instanceName);
@@ -299,15 +519,20 @@ public class AlternativePayaraMicro {
                 mc.setAlternateConfiguration(alternateHZConfigFile);
             }
             HazelcastCore.setMulticastOverride(mc);
+            bootTimings.record("multicastConfiguration", mark);
         }
 
+        mark = bootTimings.start();
         setSystemProperties();
+        bootTimings.record("setSystemProperties", mark);
         BootstrapProperties bpr = new BootstrapProperties();
         GlassFishRuntime gfRuntime;
         PortBinder binder = new PortBinder();
 
         try {
-            gfRuntime = GlassFishRuntime.bootstrap(bpr, Thread.currentThread().getContextClassLoader());
+            mark = bootTimings.start();
+            gfRuntime = GlassFishRuntimePool.acquire(bpr, Thread.currentThread().getContextClassLoader());
+            bootTimings.record("glassFishRuntimeBootstrap", mark);
             GlassFishProperties gfProp = new GlassFishProperties();
             // bind http port
             if (httpPort != Integer.MIN_VALUE) {
@@ -315,6 +540,7 @@ public class AlternativePayaraMicro {
                     bindHttp().listenerTo(gfProp).port(httpPort).using(binder);
                 } else {
                     gfProp.setPort("http-listener", httpPort);
+                    boundHttpPort = httpPort;
                 }
             } else {
                 if (autoBindHttp) {
@@ -326,7 +552,7 @@ public class AlternativePayaraMicro {
                 if (autoBindSsl) {
                     bindHttps().listenerTo(gfProp).port(sslPort).using(binder);
                 } else {
-                    gfProp.setPort("https-lisetener", sslPort);
+                    gfProp.setPort("https-listener", sslPort);
                 }
             }
             // provide domain xml
@@ -347,7 +573,9 @@ public class AlternativePayaraMicro {
                 gfProp.setInstanceRoot(rootDir.getAbsolutePath());
                 File confFile = new File(rootDir.getAbsolutePath() + File.separator + "config" + File.separator + "domain.xml");
                 if (!confFile.exists()) {
-                    installFiles(gfProp);
+                    mark = bootTimings.start();
+                    installOrRestoreFiles(gfProp);
+                    bootTimings.record("installFiles", mark);
                 } else {
                     String path = rootDir.getAbsolutePath().replace('\\', '/');
                     gfProp.setConfigFileReadOnly(false);
@@ -371,27 +599,56 @@ public class AlternativePayaraMicro {
             if (maxHttpThreads != Integer.MIN_VALUE) {
                 gfProp.setProperty(MAX_HTTP_THREADS, Integer.toString(maxHttpThreads));
             }
+            // listeners are always enabled on boot, even if domain.xml in instance root has them disabled
+            gfProp.setProperty(String.format(LISTENER_ENABLED, "http-listener"), "true");
+            if (sslPort != Integer.MIN_VALUE) {
+                gfProp.setProperty(String.format(LISTENER_ENABLED, "https-listener"), "true");
+            }
+            // override domain configuration
+            for (Map.Entry<String, String> override : configOverrides.entrySet()) {
+                gfProp.setProperty(override.getKey(), override.getValue());
+            }
 
+            mark = bootTimings.start();
             gf = gfRuntime.newGlassFish(gfProp);
+            addShutdownHook();
+            bootTimings.record("newGlassFish", mark);
 
             // reset log manager
-            File confDir = new File(System.getProperty("com.sun.aas.instanceRoot"), "config");
-            File logProp = new File(confDir.getAbsolutePath(), "logging.properties");
-            if (logProp.exists() && logProp.canRead() && logProp.isFile()) {
-                System.setProperty("java.util.logging.config.file", logProp.getAbsolutePath());
-                try {
-                    LogManager.getLogManager().readConfiguration();
-                } catch (SecurityException | IOException e) {
-                    logger.error("Payara micro logger is not available", e);
+            if (resetLogManager) {
+                mark = bootTimings.start();
+                File confDir = new File(System.getProperty("com.sun.aas.instanceRoot"), "config");
+                File logProp = new File(confDir.getAbsolutePath(), "logging.properties");
+                if (logProp.exists() && logProp.canRead() && logProp.isFile()) {
+                    System.setProperty("java.util.logging.config.file", logProp.getAbsolutePath());
+                    try {
+                        LogManager.getLogManager().readConfiguration();
+                    } catch (SecurityException | IOException e) {
+                        logger.error("Payara micro logger is not available", e);
+                    }
                 }
+                bootTimings.record("logManagerConfiguration", mark);
             }
             // run glassfish
+            mark = bootTimings.start();
             gf.start();
+            bootTimings.record("glassFishStart", mark);
+            installLogHandler();
             try {
                 Constructor<PayaraMicroRuntime> constructor = PayaraMicroRuntime.class.getDeclaredConstructor(String.class, GlassFish.class);
                 constructor.setAccessible(true);
                 runtime = constructor.newInstance(instanceName, gf);
-                deployAll();
+                if (deploymentDir != null && watchDeploymentDir) {
+                    deploymentDirWatcher = watchDeploymentDir();
+                }
+                mark = bootTimings.start();
+                deployAll(archives);
+                bootTimings.record("deployAll", mark);
+                if (deploymentDirWatcher != null) {
+                    Thread thread = new Thread(deploymentDirWatcher, "payara-deployment-dir-watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
                 return runtime;
             } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
                 logger.error("Cannot create PayaraMicroRuntime.", e);
@@ -421,7 +678,11 @@ public class AlternativePayaraMicro {
                             @Override
                             public void using(final PortBinder binder) throws GlassFishException {
                                 try {
-                                    gfProp.setPort(listener, binder.findAvailablePort(port, autoBindRange));
+                                    int available = binder.findAvailablePort(port, autoBindRange);
+                                    gfProp.setPort(listener, available);
+                                    if ("http".equals(protocol)) {
+                                        boundHttpPort = available;
+                                    }
                                 } catch (BindException e) {
                                     String msg = String.format("No available port for %s, in range %d - %d.", protocol, port, autoBindRange);
                                     logger.error(msg, e);
@@ -464,18 +725,362 @@ public class AlternativePayaraMicro {
         if (!isRunning()) {
             throw new IllegalStateException("Payara Micro is not running.");
         }
-        runtime.shutdown();
+        closeDeploymentDirWatcher();
+        try {
+            runtime.shutdown();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * start watching {@link #deploymentDir} before archives in it are deployed, so that no change is missed.
+     */
+    private DeploymentDirWatcher watchDeploymentDir() throws GlassFishException {
+        try {
+            return new DeploymentDirWatcher(deploymentDir, deploymentDirSettle, this);
+        } catch (IOException e) {
+            throw new GlassFishException(String.format("Cannot watch deployment directory %s.", deploymentDir), e);
+        }
+    }
+
+    /**
+     * replace handlers of root logger, which are configured by logging.properties and GlassFish, with {@link #logHandler}.
+     */
+    private void installLogHandler() {
+        if (logHandler == null) {
+            return;
+        }
+        java.util.logging.Logger root = java.util.logging.Logger.getLogger("");
+        replacedLogHandlers = root.getHandlers();
+        for (Handler handler : replacedLogHandlers) {
+            root.removeHandler(handler);
+        }
+        root.addHandler(logHandler);
+    }
+
+    private void uninstallLogHandler() {
+        if (logHandler == null) {
+            return;
+        }
+        if (replacedLogHandlers != null) {
+            java.util.logging.Logger root = java.util.logging.Logger.getLogger("");
+            root.removeHandler(logHandler);
+            for (Handler handler : replacedLogHandlers) {
+                root.addHandler(handler);
+            }
+            replacedLogHandlers = null;
+        }
+        logHandler.close();
+    }
+
+    private void closeDeploymentDirWatcher() {
+        if (deploymentDirWatcher == null) {
+            return;
+        }
+        try {
+            deploymentDirWatcher.close();
+        } catch (IOException e) {
+            logger.debug("Fail to stop watching {}.", deploymentDir, e);
+        }
+        deploymentDirWatcher = null;
+    }
+
+    /**
+     * dispose GlassFish if it remains, remove its shutdown hook, return {@link GlassFishRuntime} to {@link GlassFishRuntimePool},
+     * and reset the singleton so that next {@link #getInstance()} returns a fresh payara-micro.
+     */
+    public void release() {
+        closeDeploymentDirWatcher();
+        uninstallLogHandler();
+        removeShutdownHook();
+        if (gf != null) {
+            try {
+                if (gf.getStatus() == Status.STARTED) {
+                    gf.stop();
+                }
+                if (gf.getStatus() != Status.DISPOSED) {
+                    gf.dispose();
+                }
+            } catch (GlassFishException e) {
+                logger.warn("Fail to dispose GlassFish.", e);
+            }
+        }
+        gf = null;
+        runtime = null;
+        GlassFishRuntimePool.release();
+        synchronized (AlternativePayaraMicro.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * undeploy the archive if it has been deployed already, then deploy it again.
+     * @param archive an archive file(war, ear, jar, rar) or an exploded directory which has been deployed or to be deployed.
+     * @return the name of application given by {@link org.glassfish.embeddable.Deployer}.
+     * @throws GlassFishException when deployer fails.
+     */
+    public synchronized String redeploy(File archive) throws GlassFishException {
+        undeploy(archive);
+        return deploy(gf.getDeployer(), archive);
+    }
+
+    /**
+     * deploy the archive under the context root into running payara-micro, replacing one deployed from the same archive.
+     * The context root is kept for later redeploys of the archive.
+     * @param archive an archive file or an exploded directory to be deployed.
+     * @param contextRoot context root such as {@code /app}.
+     * @return the name of application given by {@link org.glassfish.embeddable.Deployer}.
+     * @throws GlassFishException when deployer fails.
+     */
+    public synchronized String deploy(File archive, String contextRoot) throws GlassFishException {
+        if (!isRunning()) {
+            throw new IllegalStateException("Payara Micro is not running.");
+        }
+        synchronized (deployedApplications) {
+            contextRoots.put(archive.getAbsolutePath(), contextRoot);
+        }
+        return redeploy(archive);
     }
 
-    private void deployAll() throws GlassFishException {
-        int depCount = 0;
+    /**
+     * redeploy the archive unless its content is the same as deployed one.
+     * Exploded directories are always redeployed.
+     * @param archive an archive file or an exploded directory which has been deployed or to be deployed.
+     * @return the name of application, or {@code null} if the archive is unchanged and redeploy is skipped.
+     * @throws GlassFishException when deployer fails.
+     */
+    public synchronized String redeployIfChanged(File archive) throws GlassFishException {
+        if (!isRunning()) {
+            throw new IllegalStateException("Payara Micro is not running.");
+        }
+        String path = archive.getAbsolutePath();
+        String deployedHash;
+        String appName;
+        synchronized (deployedApplications) {
+            deployedHash = deployedHashes.get(path);
+            appName = deployedApplications.get(path);
+        }
+        if (deployedHash != null && appName != null && deployedHash.equals(hash(archive))
+                && gf.getDeployer().getDeployedApplications().contains(appName)) {
+            logger.debug("{} is unchanged from deployed {}.", path, appName);
+            return null;
+        }
+        return redeploy(archive);
+    }
+
+    /**
+     * turn on monitoring of http-service, so that {@link #getRequestCount()} is available.
+     * @return this.
+     */
+    public AlternativePayaraMicro enableRequestMonitoring() {
+        addConfigOverride(MONITORING_ENABLED, "true");
+        return addConfigOverride(HTTP_SERVICE_MONITORING, "HIGH");
+    }
+
+    /**
+     * @return number of requests processed since boot, or {@code -1} if payara-micro is not running or monitoring is not enabled.
+     * @see #enableRequestMonitoring()
+     */
+    public long getRequestCount() {
+        GlassFish glassFish = gf;
+        if (glassFish == null) {
+            return -1L;
+        }
+        try {
+            CommandResult result = glassFish.getCommandRunner().run("get", "-m", REQUEST_COUNT);
+            if (result.getExitStatus() != CommandResult.ExitStatus.SUCCESS) {
+                return -1L;
+            }
+            for (String line : result.getOutput().split("\n")) {
+                int eq = line.indexOf('=');
+                if (eq > 0 && REQUEST_COUNT.equals(line.substring(0, eq).trim())) {
+                    return Long.parseLong(line.substring(eq + 1).trim());
+                }
+            }
+        } catch (GlassFishException | NumberFormatException e) {
+            logger.debug("Request count is not available.", e);
+        }
+        return -1L;
+    }
+
+    /**
+     * close server sockets of http and https listeners, so that payara-micro accepts no new connection while in-flight requests are drained.
+     * connections already accepted are kept, and domain configuration is not changed.
+     * grizzly transports are reached by reflection, because they are not exposed by embeddable API.
+     * @return number of listeners whose server sockets are closed.
+     */
+    public int stopAcceptingRequests() {
+        GlassFish glassFish = gf;
+        if (glassFish == null) {
+            return 0;
+        }
+        int closed = 0;
+        try {
+            Class<?> serviceType = Class.forName(GRIZZLY_SERVICE, false, PayaraMicroRuntime.class.getClassLoader());
+            Object service = glassFish.getService(serviceType);
+            for (Object proxy : collectionElements(service)) {
+                Object listener = invokeQuietly(proxy, "getUnderlyingListener");
+                Object transport = listener == null ? null : invokeQuietly(listener, "getTransport");
+                if (transport != null && invokeQuietly(transport, "unbindAll") != null) {
+                    closed++;
+                }
+            }
+        } catch (ClassNotFoundException | GlassFishException | RuntimeException e) {
+            logger.debug("Listeners of payara-micro are not available.", e);
+        }
+        return closed;
+    }
+
+    private static List<Object> collectionElements(Object target) {
+        List<Object> elements = new ArrayList<>();
+        if (target == null) {
+            return elements;
+        }
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Collection.class.isAssignableFrom(field.getType())) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    Collection<?> values = (Collection<?>) field.get(target);
+                    if (values != null) {
+                        elements.addAll(values);
+                    }
+                } catch (IllegalAccessException | RuntimeException e) {
+                    logger.debug("Cannot read {}.", field, e);
+                }
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * @return result of the public no-arg method, {@link Boolean#TRUE} for void methods, or {@code null} if it is not available.
+     */
+    private static Object invokeQuietly(Object target, String name) {
+        try {
+            Method method = target.getClass().getMethod(name);
+            Object result = method.invoke(target);
+            return method.getReturnType() == void.class ? Boolean.TRUE : result;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            logger.debug("Cannot call {} of {}.", name, target.getClass().getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @param archive deployed archive.
+     * @return name of application deployed from the archive, or {@code null} if it is not deployed.
+     */
+    public String getDeployedApplication(File archive) {
+        synchronized (deployedApplications) {
+            return deployedApplications.get(archive.getAbsolutePath());
+        }
+    }
+
+    /**
+     * undeploy the archive if it has been deployed.
+     * @param archive an archive file or an exploded directory which has been deployed.
+     * @return {@code true} if the archive has been deployed and is undeployed.
+     * @throws GlassFishException when deployer fails.
+     */
+    public synchronized boolean undeploy(File archive) throws GlassFishException {
+        if (!isRunning()) {
+            throw new IllegalStateException("Payara Micro is not running.");
+        }
         Deployer deployer = gf.getDeployer();
+        String appName;
+        synchronized (deployedApplications) {
+            appName = deployedApplications.remove(archive.getAbsolutePath());
+            deployedHashes.remove(archive.getAbsolutePath());
+        }
+        if (appName == null || !deployer.getDeployedApplications().contains(appName)) {
+            return false;
+        }
+        logger.debug("Undeploying {}.", appName);
+        deployer.undeploy(appName);
+        return true;
+    }
+
+    /**
+     * @return names of deployed applications.
+     */
+    public List<String> getDeployedApplications() {
+        synchronized (deployedApplications) {
+            return new ArrayList<>(deployedApplications.values());
+        }
+    }
+
+    private String deploy(Deployer deployer, File archive) throws GlassFishException {
+        // hash content before deploying, changes while deploying will be redeployed next time
+        String hash = hash(archive);
+        String contextRoot;
+        synchronized (deployedApplications) {
+            contextRoot = contextRoots.get(archive.getAbsolutePath());
+        }
+        String appName = contextRoot == null
+                ? deployer.deploy(archive, "--availabilityenabled=true")
+                : deployer.deploy(archive, "--availabilityenabled=true", "--contextroot=" + contextRoot);
+        if (appName == null) {
+            throw new GlassFishException(String.format("Fail to deploy %s.", archive.getAbsolutePath()));
+        }
+        synchronized (deployedApplications) {
+            deployedApplications.put(archive.getAbsolutePath(), appName);
+            if (hash != null) {
+                deployedHashes.put(archive.getAbsolutePath(), hash);
+            }
+        }
+        logger.debug("{} is deployed as {}.", archive.getAbsolutePath(), appName);
+        return appName;
+    }
+
+    private static String hash(File archive) {
+        try {
+            return ContentHash.of(archive);
+        } catch (IOException e) {
+            logger.debug("Cannot hash {}, it is regarded as changed.", archive, e);
+            return null;
+        }
+    }
+
+    private void deployAll(List<File> archives) throws GlassFishException {
+        final Deployer deployer = gf.getDeployer();
+        ParallelDeployer.DeployAction action = new ParallelDeployer.DeployAction() {
+            @Override
+            public void deploy(File archive) throws GlassFishException {
+                long start = bootTimings.start();
+                AlternativePayaraMicro.this.deploy(deployer, archive);
+                bootTimings.record("deploy:" + archive.getName(), start);
+                logger.info("Deployed {} in {} ms", archive.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        };
+        long start = System.nanoTime();
+        // one thread deploys archives one by one, still in the order of deployment dependencies
+        if (!archives.isEmpty()) {
+            new ParallelDeployer(Math.max(1, deploymentThreads), deploymentDependencies).deploy(archives, action);
+        }
+        logger.info("Deployed {} wars in {} ms", archives.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * @param archives archives to be deployed.
+     * @throws IllegalArgumentException when archives have the same application name(file name without extension).
+     */
+    public static void verifyApplicationNames(List<File> archives) {
+        ParallelDeployer.byName(archives);
+    }
+
+    private List<File> collectArchives() {
+        List<File> archives = new ArrayList<>();
         // deploy explicit wars
         if (deployments != null) {
             for (File war : deployments) {
-                if (war.exists() && war.isFile() && war.canRead()) {
-                    deployer.deploy(war, "--availabilityenabled=true");
-                    depCount++;
+                if (war.exists() && (war.isFile() || war.isDirectory()) && war.canRead()) {
+                    archives.add(war);
                 } else {
                     logger.info("{} is not a valid deployment", war.getAbsolutePath());
                 }
@@ -483,57 +1088,35 @@ public class AlternativePayaraMicro {
         }
         // deploy from deployment director
         if (deploymentDir != null) {
-            for (File war : deploymentDir.listFiles()) {
-                String archive = war.getAbsolutePath();
-                if (war.isFile() && war.canRead() &&
-                        (archive.endsWith(".war") || archive.endsWith(".ear") ||
-                                archive.endsWith(".jar") || archive.endsWith(".rar"))) {
-                    deployer.deploy(war, "--availabilityenabled=true");
-                    depCount++;
-                }
-            }
+            archives.addAll(DeploymentDirWatcher.archives(deploymentDir));
         }
-        logger.info("Deployed {} wars", depCount);
+        return archives;
     }
 
-    private void installFiles(GlassFishProperties gfProp) {
-        File confDir = new File(rootDir.getAbsolutePath(), "config");
-        new File(rootDir.getAbsolutePath(), "docroot").mkdirs();
-        confDir.mkdirs();
-        String confDirPath = confDir.getAbsolutePath();
-
-        String[] configFiles = new String[]{"config/keyfile",
-                "config/server.policy",
-                "config/cacerts.jks",
-                "config/keystore.jks",
-                "config/login.conf",
-                "config/logging.properties",
-                "config/admin-keyfile",
-                "config/default-web.xml",
-                "org/glassfish/embed/domain.xml"
-        };
-        ClassLoader loader = getClass().getClassLoader();
-        for (String configFile : configFiles) {
-            URL url = loader.getResource(configFile);
-            if (url != null) {
-                copy(url, new File(confDirPath,
-                                configFile.substring(configFile.lastIndexOf('/') + 1)), false);
-            }
+    private void installOrRestoreFiles(GlassFishProperties gfProp) {
+        if (instanceRootCache == null) {
+            installFiles(gfProp);
+            return;
         }
-
-        URL brandingUrl = loader.getResource("config/branding/glassfish-version.properties");
-        if (brandingUrl != null) {
-            copy(brandingUrl, new File(confDirPath, "branding/glassfish-version.properties"), false);
-        }
-
-        String uri = gfProp.getConfigFileURI();
+        InstanceRootCache cache = new InstanceRootCache(instanceRootCache);
+        String key;
         try {
-            copy(URI.create(uri).toURL(), new File(confDirPath, "domain.xml"), true);
-        } catch (MalformedURLException e) {
-            logger.warn("domain.xml is not available.", e);
+            key = cache.key(gfProp.getConfigFileURI());
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Instance root cache is not available.", e);
+            installFiles(gfProp);
+            return;
+        }
+        if (!cache.restore(key, rootDir)) {
+            installFiles(gfProp);
+            cache.store(key, rootDir);
         }
     }
 
+    private void installFiles(GlassFishProperties gfProp) {
+        InstanceRootInstaller.install(rootDir, gfProp.getConfigFileURI());
+    }
+
     private void setSystemProperties() {
         try {
             Properties prop = new Properties();
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Set of payara-micro settings chosen by {@code profile} of {@code payara {}} block.
+ */
+public enum BootProfile {
+
+    /**
+     * payara-micro's own settings, clustering with Hazelcast.
+     */
+    DEFAULT("default", Collections.<String, String>emptyMap()),
+
+    /**
+     * for local development and CI. Hazelcast clustering is turned off with the no-cluster domain,
+     * JUL configuration is not read again, and services which are not used by developers are disabled.
+     */
+    FAST("fast", fastOverrides());
+
+    private final String id;
+
+    private final Map<String, String> overrides;
+
+    BootProfile(String id, Map<String, String> overrides) {
+        this.id = id;
+        this.overrides = overrides;
+    }
+
+    private static Map<String, String> fastOverrides() {
+        Map<String, String> overrides = new LinkedHashMap<>();
+        // no deployment scanner, this plugin deploys archives by itself
+        overrides.put("embedded-glassfish-config.server.admin-service.das-config.autodeploy-enabled", "false");
+        overrides.put("embedded-glassfish-config.server.admin-service.das-config.dynamic-reload-enabled", "false");
+        // no monitoring probes
+        overrides.put("embedded-glassfish-config.server.monitoring-service.monitoring-enabled", "false");
+        return Collections.unmodifiableMap(overrides);
+    }
+
+    /**
+     * @param id id of profile.
+     * @return profile of the id, or {@code null} if unknown.
+     */
+    public static BootProfile of(String id) {
+        for (BootProfile profile : values()) {
+            if (profile.id.equals(id)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * apply settings of this profile to payara-micro.
+     * @param payaraMicro payara-micro to be configured.
+     */
+    public void applyTo(AlternativePayaraMicro payaraMicro) {
+        if (this == DEFAULT) {
+            return;
+        }
+        payaraMicro.setNoCluster(isNoCluster());
+        payaraMicro.setResetLogManager(false);
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            payaraMicro.addConfigOverride(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return {@code true} if payara-micro boots with the no-cluster domain.
+     */
+    public boolean isNoCluster() {
+        return this != DEFAULT;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return domain configuration properties overridden by this profile.
+     */
+    public Map<String, String> getOverrides() {
+        return overrides;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Boot time and resident memory of the last run of each {@link BootProfile}, so that a profile can be compared with {@link BootProfile#DEFAULT}.
+ * Measurements are kept separately for payara-micro in gradle's JVM and in a forked JVM, which have different resident memory.
+ */
+public class BootProfileBaseline {
+
+    private static final String BOOT_MILLIS = ".bootMillis";
+
+    private static final String RESIDENT_KB = ".residentKb";
+
+    private static final long KB_PER_MB = 1024L;
+
+    private final File file;
+
+    private final String mode;
+
+    /**
+     * @param file properties file in which measurements are kept.
+     * @param mode {@code in-process} or {@code fork}.
+     */
+    public BootProfileBaseline(File file, String mode) {
+        this.file = file;
+        this.mode = mode;
+    }
+
+    /**
+     * record a measurement of the profile and compare it with the last run of {@link BootProfile#DEFAULT}.
+     * @param profile profile with which payara-micro booted.
+     * @param bootMillis milliseconds taken to boot.
+     * @param residentKb resident memory in kilobytes, or {@link ResidentMemory#UNKNOWN}.
+     * @return comparison with default profile, or {@code null} if the profile is default or default profile has never run.
+     * @throws IOException when the file cannot be read or written.
+     */
+    public String record(BootProfile profile, long bootMillis, long residentKb) throws IOException {
+        Properties props = new Properties();
+        if (file.isFile()) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                props.load(in);
+            }
+        }
+        props.setProperty(key(profile, BOOT_MILLIS), Long.toString(bootMillis));
+        props.setProperty(key(profile, RESIDENT_KB), Long.toString(residentKb));
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            props.store(out, "boot time and resident memory of payara-micro by profile");
+        }
+        if (profile == BootProfile.DEFAULT) {
+            return null;
+        }
+        long defaultMillis = longValue(props, key(BootProfile.DEFAULT, BOOT_MILLIS));
+        if (defaultMillis < 0L) {
+            return null;
+        }
+        long defaultKb = longValue(props, key(BootProfile.DEFAULT, RESIDENT_KB));
+        StringBuilder sb = new StringBuilder(String.format("Profile %s booted in %d ms(%+d ms", profile, bootMillis, bootMillis - defaultMillis));
+        if (residentKb >= 0L && defaultKb >= 0L) {
+            sb.append(String.format(") with %d MB resident(%+d MB", residentKb / KB_PER_MB, (residentKb - defaultKb) / KB_PER_MB));
+        }
+        return sb.append(") compared with the last run of profile ").append(BootProfile.DEFAULT).append('.').toString();
+    }
+
+    private String key(BootProfile profile, String suffix) {
+        return mode + "." + profile.getId() + suffix;
+    }
+
+    private static long longValue(Properties props, String key) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
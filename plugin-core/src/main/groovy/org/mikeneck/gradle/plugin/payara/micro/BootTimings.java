@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import org.mikeneck.gradle.plugin.payara.server.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records elapsed time of each boot phase.
+ * Phases may be recorded from several threads(e.g. parallel deployment).
+ */
+public class BootTimings {
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private long firstStart = Long.MAX_VALUE;
+
+    private long lastEnd = Long.MIN_VALUE;
+
+    /**
+     * @return a mark to be passed to {@link #record(String, long)}.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @param phase name of phase.
+     * @param start a mark returned by {@link #start()}.
+     */
+    public synchronized void record(String phase, long start) {
+        long end = System.nanoTime();
+        phases.put(phase, end - start);
+        firstStart = Math.min(firstStart, start);
+        lastEnd = Math.max(lastEnd, end);
+    }
+
+    /**
+     * @return phase names to elapsed milliseconds, in recorded order.
+     */
+    public synchronized Map<String, Long> getPhases() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            millis.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue()));
+        }
+        return millis;
+    }
+
+    /**
+     * @return milliseconds from the start of first phase to the end of last phase.
+     */
+    public synchronized long getWallClock() {
+        return phases.isEmpty() ? 0L : TimeUnit.NANOSECONDS.toMillis(lastEnd - firstStart);
+    }
+
+    /**
+     * @param count number of phases.
+     * @return a short summary with wall clock time and the slowest phases.
+     */
+    public String summary(int count) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(getPhases().entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> left, Map.Entry<String, Long> right) {
+                return Long.compare(right.getValue(), left.getValue());
+            }
+        });
+        StringBuilder sb = new StringBuilder(String.format("boot %d ms", getWallClock()));
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(count, entries.size()))) {
+            sb.append(String.format(", %s %d ms", entry.getKey(), entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * write timings as JSON.
+     * @param file report file.
+     * @throws IOException when fails to write.
+     */
+    public void writeJson(File file) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"timestamp\": \"").append(format.format(new Date())).append("\",\n");
+        sb.append("  \"payaraVersion\": ").append(Json.quote(PayaraVersion.current())).append(",\n");
+        sb.append("  \"wallClockMillis\": ").append(getWallClock()).append(",\n");
+        sb.append("  \"phases\": [");
+        String separator = "\n";
+        for (Map.Entry<String, Long> entry : getPhases().entrySet()) {
+            sb.append(separator)
+                    .append("    {\"name\": ").append(Json.quote(entry.getKey()))
+                    .append(", \"millis\": ").append(entry.getValue()).append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            Files.createDirectories(dir.toPath());
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(sb.toString());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import org.glassfish.embeddable.GlassFishException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches deployment directory of {@link AlternativePayaraMicro} with {@link WatchService}.
+ * Archives are deployed when they appear, redeployed when they change, and undeployed when they are deleted.
+ * An archive is (re)deployed only after its size and last modified time have settled, so that archives being copied are not deployed.
+ */
+class DeploymentDirWatcher implements Runnable, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeploymentDirWatcher.class);
+
+    private final File dir;
+
+    private final long settle;
+
+    private final AlternativePayaraMicro payaraMicro;
+
+    private final WatchService watchService;
+
+    /**
+     * stamps of archives at the time they were deployed.
+     */
+    private final Map<File, Stamp> deployed = new HashMap<>();
+
+    /**
+     * start watching the directory. Archives in the directory now are regarded as deployed by {@link AlternativePayaraMicro} at boot.
+     * @param dir deployment directory.
+     * @param settle milliseconds in which size and last modified time of an archive should not change before it is deployed.
+     * @param payaraMicro payara-micro to which archives are deployed.
+     * @throws IOException when the directory cannot be watched.
+     */
+    DeploymentDirWatcher(File dir, long settle, AlternativePayaraMicro payaraMicro) throws IOException {
+        this.dir = dir;
+        this.settle = settle;
+        this.payaraMicro = payaraMicro;
+        Path path = dir.toPath();
+        this.watchService = path.getFileSystem().newWatchService();
+        path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        for (File archive : archives(dir)) {
+            deployed.put(archive, Stamp.of(archive));
+        }
+    }
+
+    /**
+     * @param dir deployment directory.
+     * @return archives(war, ear, jar and rar) in the directory.
+     */
+    static Set<File> archives(File dir) {
+        Set<File> archives = new LinkedHashSet<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return archives;
+        }
+        for (File file : files) {
+            if (file.isFile() && file.canRead() && isArchive(file)) {
+                archives.add(file.getAbsoluteFile());
+            }
+        }
+        return archives;
+    }
+
+    private static boolean isArchive(File file) {
+        String name = file.getName();
+        return name.endsWith(".war") || name.endsWith(".ear") || name.endsWith(".jar") || name.endsWith(".rar");
+    }
+
+    @Override
+    public void run() {
+        LOG.debug("Start watching deployment directory {}.", dir);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<File> changes = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                // collect events until settle window passes without events
+                while (key != null) {
+                    collect(key, changes);
+                    key = watchService.poll(settle, TimeUnit.MILLISECONDS);
+                }
+                for (File archive : changes) {
+                    apply(archive);
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("DeploymentDirWatcher is interrupted.");
+        } catch (ClosedWatchServiceException e) {
+            LOG.debug("DeploymentDirWatcher is closed.");
+        }
+    }
+
+    private void collect(WatchKey key, Set<File> changes) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // events are lost, compare whole directory
+                changes.addAll(archives(dir));
+                changes.addAll(deployed.keySet());
+                continue;
+            }
+            File file = dir.toPath().resolve((Path) event.context()).toFile().getAbsoluteFile();
+            if (isArchive(file)) {
+                changes.add(file);
+            }
+        }
+        key.reset();
+    }
+
+    private void apply(File archive) throws InterruptedException {
+        Stamp stamp = awaitSettled(archive);
+        try {
+            if (stamp == null) {
+                if (deployed.remove(archive) != null && payaraMicro.undeploy(archive)) {
+                    LOG.info("Undeployed {} removed from {}.", archive.getName(), dir);
+                }
+            } else if (!stamp.equals(deployed.get(archive))) {
+                long start = System.nanoTime();
+                String appName = payaraMicro.redeployIfChanged(archive);
+                deployed.put(archive, stamp);
+                if (appName == null) {
+                    LOG.info("Skipped {} in {}, whose content is unchanged.", archive.getName(), dir);
+                    return;
+                }
+                LOG.info("Deployed {} from {} as {} in {} ms.", archive.getName(), dir, appName,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (GlassFishException | RuntimeException e) {
+            LOG.warn("Fail to deploy {}.", archive, e);
+        }
+    }
+
+    /**
+     * @return stamp which doesn't change within {@link #settle}, or {@code null} if the archive doesn't exist.
+     */
+    private Stamp awaitSettled(File archive) throws InterruptedException {
+        Stamp last = Stamp.of(archive);
+        while (last != null) {
+            Thread.sleep(settle);
+            Stamp current = Stamp.of(archive);
+            if (last.equals(current)) {
+                return current;
+            }
+            LOG.debug("{} is still changing.", archive);
+            last = current;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        LOG.debug("Stop watching deployment directory {}.", dir);
+        watchService.close();
+    }
+
+    private static final class Stamp {
+
+        private final long size;
+
+        private final long lastModified;
+
+        private Stamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static Stamp of(File file) {
+            if (!file.isFile()) {
+                return null;
+            }
+            return new Stamp(file.length(), file.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Stamp)) {
+                return false;
+            }
+            Stamp stamp = (Stamp) o;
+            return size == stamp.size && lastModified == stamp.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (size ^ (size >>> 32)) + (int) (lastModified ^ (lastModified >>> 32));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import org.glassfish.embeddable.BootstrapProperties;
+import org.glassfish.embeddable.GlassFishException;
+import org.glassfish.embeddable.GlassFishRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Keeps a bootstrapped {@link GlassFishRuntime} in this JVM(typically gradle daemon) between task executions.
+ * <p>
+ * {@link GlassFishRuntime#bootstrap(BootstrapProperties, ClassLoader)} can be called only once until the runtime is shut down,
+ * and it is the most expensive phase of booting payara-micro. The pool hands out the same runtime, from which a fresh
+ * {@link org.glassfish.embeddable.GlassFish} is created for each execution. The runtime is shut down(evicted)
+ * when payara version changes, or when old generation is still full after GC at the end of an execution.
+ */
+public final class GlassFishRuntimePool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GlassFishRuntimePool.class);
+
+    /**
+     * ratio of heap used after GC, above which the runtime is evicted.
+     */
+    private static final double MEMORY_PRESSURE = 0.85;
+
+    private static GlassFishRuntime runtime;
+
+    private static String version;
+
+    private static ClassLoader loader;
+
+    private GlassFishRuntimePool() {
+    }
+
+    /**
+     * @param properties properties used when a runtime is bootstrapped.
+     * @param classLoader class loader used when a runtime is bootstrapped.
+     * @return pooled runtime, or newly bootstrapped runtime if none is pooled.
+     * @throws GlassFishException when bootstrap fails.
+     */
+    static synchronized GlassFishRuntime acquire(BootstrapProperties properties, ClassLoader classLoader) throws GlassFishException {
+        String current = PayaraVersion.current();
+        if (runtime != null && !current.equals(version)) {
+            LOG.info("Payara version has changed from {} to {}, evicting GlassFishRuntime.", version, current);
+            shutdownRuntime();
+        }
+        if (runtime != null) {
+            LOG.info("Reusing GlassFishRuntime of payara {}.", version);
+            return runtime;
+        }
+        runtime = GlassFishRuntime.bootstrap(properties, classLoader);
+        version = current;
+        loader = classLoader;
+        LOG.debug("GlassFishRuntime of payara {} is bootstrapped with {}.", version, loader);
+        return runtime;
+    }
+
+    /**
+     * called when a GlassFish created from the pooled runtime is disposed. Evicts the runtime under memory pressure.
+     */
+    static synchronized void release() {
+        if (runtime != null && underMemoryPressure()) {
+            LOG.info("Heap is still used over {}% after GC, evicting GlassFishRuntime.", (int) (MEMORY_PRESSURE * 100));
+            shutdownRuntime();
+        }
+    }
+
+    /**
+     * shut down the pooled runtime, so that the next execution bootstraps a new one.
+     */
+    public static synchronized void evict() {
+        if (runtime != null) {
+            shutdownRuntime();
+        }
+    }
+
+    /**
+     * @return {@code true} if a runtime is pooled.
+     */
+    public static synchronized boolean isPooled() {
+        return runtime != null;
+    }
+
+    private static void shutdownRuntime() {
+        try {
+            runtime.shutdown();
+        } catch (GlassFishException e) {
+            LOG.warn("Fail to shutdown GlassFishRuntime.", e);
+        } finally {
+            runtime = null;
+            version = null;
+            loader = null;
+        }
+    }
+
+    private static boolean underMemoryPressure() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+                continue;
+            }
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            long max = pool.getUsage().getMax();
+            if (afterGc != null && max > 0 && (double) afterGc.getUsed() / max > MEMORY_PRESSURE) {
+                LOG.debug("Memory pool {} uses {} of {} bytes after GC.", pool.getName(), afterGc.getUsed(), max);
+                return true;
+            }
+        }
+        return false;
+    }
+}
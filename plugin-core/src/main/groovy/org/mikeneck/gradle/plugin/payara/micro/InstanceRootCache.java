@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * Shared on-disk cache of installed instance roots.
+ * <p>
+ * An entry is keyed by a hash of payara version and domain.xml(its uri and contents),
+ * and holds {@code config} and {@code docroot} directories just after installation.
+ * Restoring an entry copies files under {@code config}, which payara-micro may write in place(domain.xml, logging.properties, keystores),
+ * so that the entry is never changed through an instance root. Other files are hardlinked, or copied when hardlink is not available.
+ */
+public class InstanceRootCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InstanceRootCache.class);
+
+    private static final String[] INSTALLED_DIRS = {"config", "docroot"};
+
+    private static final String CONFIG_DIR = "config";
+
+    private final File cacheDir;
+
+    public InstanceRootCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @param configFileUri uri of domain.xml.
+     * @return key of cache entry.
+     * @throws IOException when domain.xml is not readable.
+     */
+    public String key(String configFileUri) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(PayaraVersion.current().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(configFileUri.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (InputStream in = URI.create(configFileUri).toURL().openStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * @param key key of cache entry.
+     * @param rootDir instance root to be restored.
+     * @return {@code true} if the entry exists and is restored.
+     */
+    public boolean restore(String key, File rootDir) {
+        Path entry = new File(cacheDir, key).toPath();
+        if (!Files.isDirectory(entry)) {
+            LOG.debug("Instance root cache {} is not found.", key);
+            return false;
+        }
+        try {
+            link(entry, rootDir.toPath());
+            LOG.info("Instance root is restored from cache {}.", entry);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Fail to restore instance root from cache {}.", entry, e);
+            return false;
+        }
+    }
+
+    /**
+     * @param key key of cache entry.
+     * @param rootDir installed instance root.
+     */
+    public void store(String key, File rootDir) {
+        Path entry = new File(cacheDir, key).toPath();
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+        Path temporary = new File(cacheDir, key + ".tmp-" + UUID.randomUUID()).toPath();
+        try {
+            for (String dir : INSTALLED_DIRS) {
+                Path source = new File(rootDir, dir).toPath();
+                if (Files.isDirectory(source)) {
+                    copyTree(source, temporary.resolve(dir));
+                }
+            }
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+            LOG.info("Instance root is stored to cache {}.", entry);
+        } catch (FileAlreadyExistsException e) {
+            LOG.debug("Instance root cache {} is stored by another process.", entry);
+        } catch (IOException e) {
+            LOG.warn("Fail to store instance root to cache {}.", entry, e);
+        } finally {
+            deleteQuietly(temporary);
+        }
+    }
+
+    /**
+     * @param instanceDir prepared instance root.
+     * @param rootDir instance root to be seeded with files of {@code instanceDir}.
+     * @throws IOException when files are not linked nor copied.
+     */
+    public static void seed(File instanceDir, File rootDir) throws IOException {
+        link(instanceDir.toPath(), rootDir.toPath());
+    }
+
+    private static void link(final Path source, final Path destination) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(destination.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = destination.resolve(source.relativize(file).toString());
+                if (Files.exists(target)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (source.relativize(file).startsWith(CONFIG_DIR)) {
+                    Files.copy(file, target);
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    Files.createLink(target, file);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(file, target);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void copyTree(final Path source, final Path destination) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(destination.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, destination.resolve(source.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static void deleteQuietly(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.debug("Fail to delete {}.", path, e);
+        }
+    }
+}
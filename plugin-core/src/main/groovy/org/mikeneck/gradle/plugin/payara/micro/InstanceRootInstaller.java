@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+
+import static com.sun.enterprise.glassfish.bootstrap.StaticGlassFishRuntime.copy;
+
+/**
+ * Installs files which payara-micro requires into an instance root, i.e. {@code config} and {@code docroot} directories.
+ */
+public final class InstanceRootInstaller {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InstanceRootInstaller.class);
+
+    private static final String[] CONFIG_FILES = {"config/keyfile",
+            "config/server.policy",
+            "config/cacerts.jks",
+            "config/keystore.jks",
+            "config/login.conf",
+            "config/logging.properties",
+            "config/admin-keyfile",
+            "config/default-web.xml",
+            "org/glassfish/embed/domain.xml"
+    };
+
+    private static final String BRANDING = "config/branding/glassfish-version.properties";
+
+    private InstanceRootInstaller() {
+    }
+
+    /**
+     * @param noCluster {@code true} for domain.xml without hazelcast cluster.
+     * @return uri of domain.xml bundled in payara-micro.
+     */
+    public static String embeddedDomainXml(boolean noCluster) {
+        String clusterXml = noCluster ? "microdomain-nocluseter.xml" : "microdomain.xml";
+        URL url = InstanceRootInstaller.class.getClassLoader().getResource(clusterXml);
+        if (url == null) {
+            throw new IllegalStateException(clusterXml + " is not found in payara-micro.");
+        }
+        return url.toExternalForm();
+    }
+
+    /**
+     * @param rootDir instance root.
+     * @param configFileUri uri of domain.xml to be copied into {@code config} directory.
+     */
+    public static void install(File rootDir, String configFileUri) {
+        File confDir = new File(rootDir.getAbsolutePath(), "config");
+        new File(rootDir.getAbsolutePath(), "docroot").mkdirs();
+        confDir.mkdirs();
+        String confDirPath = confDir.getAbsolutePath();
+
+        ClassLoader loader = InstanceRootInstaller.class.getClassLoader();
+        for (String configFile : CONFIG_FILES) {
+            URL url = loader.getResource(configFile);
+            if (url != null) {
+                copy(url, new File(confDirPath,
+                                configFile.substring(configFile.lastIndexOf('/') + 1)), false);
+            }
+        }
+
+        URL brandingUrl = loader.getResource(BRANDING);
+        if (brandingUrl != null) {
+            copy(brandingUrl, new File(confDirPath, "branding/glassfish-version.properties"), false);
+        }
+
+        try {
+            copy(URI.create(configFileUri).toURL(), new File(confDirPath, "domain.xml"), true);
+        } catch (MalformedURLException e) {
+            LOG.warn("domain.xml is not available.", e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import org.glassfish.embeddable.GlassFishException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deploys archives concurrently with bounded threads.
+ * An archive is deployed after all archives on which it depends are deployed.
+ * Archives are identified by their file names without extension.
+ */
+class ParallelDeployer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelDeployer.class);
+
+    private final int threads;
+
+    private final Map<String, Set<String>> dependencies;
+
+    ParallelDeployer(int threads, Map<String, Set<String>> dependencies) {
+        this.threads = threads;
+        this.dependencies = dependencies;
+    }
+
+    static String archiveName(File archive) {
+        String name = archive.getName();
+        int dot = name.lastIndexOf('.');
+        return !archive.isDirectory() && dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * @param archives archives to be deployed.
+     * @return archives keyed by their names.
+     * @throws IllegalArgumentException when archives have the same name, which would be deployed as one application.
+     */
+    static Map<String, File> byName(List<File> archives) {
+        Map<String, File> byName = new LinkedHashMap<>();
+        for (File archive : archives) {
+            String name = archiveName(archive);
+            File other = byName.put(name, archive);
+            if (other != null) {
+                throw new IllegalArgumentException(String.format("%s and %s have the same application name %s.", other, archive, name));
+            }
+        }
+        return byName;
+    }
+
+    void deploy(List<File> archives, final DeployAction action) throws GlassFishException {
+        final Map<String, File> byName = byName(archives);
+        Map<String, Set<String>> pending = pendingDependencies(byName.keySet());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, byName.size()), threadFactory());
+        CompletionService<String> completion = new ExecutorCompletionService<>(executor);
+        try {
+            Set<String> submitted = new HashSet<>();
+            submitReady(pending, submitted, byName, action, completion);
+            for (int done = 0; done < byName.size(); done++) {
+                String deployed = completion.take().get();
+                for (Set<String> waiting : pending.values()) {
+                    waiting.remove(deployed);
+                }
+                submitReady(pending, submitted, byName, action, completion);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GlassFishException) {
+                throw (GlassFishException) cause;
+            }
+            throw new GlassFishException("Fail to deploy archives.", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GlassFishException("Deployment is interrupted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, Set<String>> pendingDependencies(Set<String> names) throws GlassFishException {
+        Map<String, Set<String>> pending = new LinkedHashMap<>();
+        for (String name : names) {
+            Set<String> deps = new HashSet<>();
+            Set<String> declared = dependencies.get(name);
+            if (declared != null) {
+                for (String dep : declared) {
+                    if (names.contains(dep)) {
+                        deps.add(dep);
+                    } else {
+                        LOG.warn("{} depends on {}, but it is not deployed.", name, dep);
+                    }
+                }
+            }
+            pending.put(name, deps);
+        }
+        verifyNoCycle(pending);
+        return pending;
+    }
+
+    private static void verifyNoCycle(Map<String, Set<String>> pending) throws GlassFishException {
+        Map<String, Set<String>> rest = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : pending.entrySet()) {
+            rest.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        boolean progress = true;
+        while (!rest.isEmpty() && progress) {
+            List<String> free = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : rest.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    free.add(entry.getKey());
+                }
+            }
+            for (String name : free) {
+                rest.remove(name);
+                for (Set<String> deps : rest.values()) {
+                    deps.remove(name);
+                }
+            }
+            progress = !free.isEmpty();
+        }
+        if (!rest.isEmpty()) {
+            throw new GlassFishException(String.format("Deployment dependencies have a cycle among %s.", rest.keySet()));
+        }
+    }
+
+    private static void submitReady(Map<String, Set<String>> pending, Set<String> submitted, Map<String, File> byName,
+                                    final DeployAction action, CompletionService<String> completion) {
+        for (Map.Entry<String, Set<String>> entry : pending.entrySet()) {
+            final String name = entry.getKey();
+            if (entry.getValue().isEmpty() && submitted.add(name)) {
+                final File archive = byName.get(name);
+                completion.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        action.deploy(archive);
+                        return name;
+                    }
+                });
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "payara-deployer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setContextClassLoader(loader);
+                return thread;
+            }
+        };
+    }
+
+    interface DeployAction {
+        void deploy(File archive) throws GlassFishException;
+    }
+}
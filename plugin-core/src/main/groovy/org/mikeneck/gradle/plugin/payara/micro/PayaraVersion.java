@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import fish.payara.micro.PayaraMicroRuntime;
+
+import java.security.CodeSource;
+
+/**
+ * Identifies payara-micro on the classpath.
+ */
+public final class PayaraVersion {
+
+    private PayaraVersion() {
+    }
+
+    /**
+     * @return implementation version of payara-micro,
+     * or location of payara-micro jar if its manifest doesn't have version.
+     */
+    public static String current() {
+        Package pkg = PayaraMicroRuntime.class.getPackage();
+        String version = pkg == null ? null : pkg.getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        CodeSource codeSource = PayaraMicroRuntime.class.getProtectionDomain().getCodeSource();
+        return codeSource == null ? "unknown" : codeSource.getLocation().toExternalForm();
+    }
+}
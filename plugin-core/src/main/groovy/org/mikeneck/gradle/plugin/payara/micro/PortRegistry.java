@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import fish.payara.micro.PortBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.BindException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of ports reserved by payara-micro instances on this host, shared between processes through a locked file.
+ * <p>
+ * A port is given to one owner at a time, and it must also be free according to {@link PortBinder}.
+ * Reservations are dropped when the owner releases them, or when they are older than {@link #LEASE} and their ports are free again,
+ * which happens if a build is killed before releasing.
+ */
+public class PortRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PortRegistry.class);
+
+    /**
+     * time during which a reservation is kept even if its port is not bound yet.
+     */
+    public static final long LEASE = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int MAX_PORT = 65535;
+
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * file locks are held by the JVM, so threads in a JVM are serialized with this monitor.
+     */
+    private static final Object JVM_LOCK = new Object();
+
+    private final File file;
+
+    private final PortBinder binder = new PortBinder();
+
+    /**
+     * @param file registry file, which is created if missing.
+     */
+    public PortRegistry(File file) {
+        this.file = file;
+    }
+
+    /**
+     * reserve a port for each name, searching from its base port up to {@code range} ports above.
+     * If the owner already has reservations for the same names, they are renewed and returned.
+     * @param owner id of the payara-micro instance, which is stable across builds.
+     * @param bases base ports by name.
+     * @param range number of ports to try above each base port.
+     * @return reserved ports by name.
+     * @throws IOException when the registry cannot be updated, or no port is available for a name.
+     */
+    public Map<String, Integer> reserve(String owner, Map<String, Integer> bases, int range) throws IOException {
+        synchronized (JVM_LOCK) {
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel();
+                 FileLock ignored = channel.lock()) {
+                Properties entries = read(channel);
+                long now = System.currentTimeMillis();
+                Map<String, Integer> previous = owned(entries, owner);
+                if (previous.keySet().equals(bases.keySet())) {
+                    for (Map.Entry<String, Integer> entry : previous.entrySet()) {
+                        entries.setProperty(entry.getValue().toString(), entry(owner, entry.getKey(), now));
+                    }
+                    write(channel, entries);
+                    LOG.debug("{} keeps its ports {}.", owner, previous);
+                    return previous;
+                }
+                removeOwned(entries, owner);
+                expire(entries, now);
+                Set<Integer> taken = new HashSet<>();
+                for (String port : entries.stringPropertyNames()) {
+                    taken.add(Integer.valueOf(port));
+                }
+                Map<String, Integer> reserved = new LinkedHashMap<>();
+                for (Map.Entry<String, Integer> base : bases.entrySet()) {
+                    int port = find(base.getKey(), base.getValue(), range, taken);
+                    taken.add(port);
+                    reserved.put(base.getKey(), port);
+                    entries.setProperty(Integer.toString(port), entry(owner, base.getKey(), now));
+                }
+                write(channel, entries);
+                LOG.debug("{} reserved ports {}.", owner, reserved);
+                return reserved;
+            }
+        }
+    }
+
+    /**
+     * drop all reservations of the owner.
+     * @param owner id of the payara-micro instance.
+     * @throws IOException when the registry cannot be updated.
+     */
+    public void release(String owner) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        synchronized (JVM_LOCK) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel();
+                 FileLock ignored = channel.lock()) {
+                Properties entries = read(channel);
+                if (removeOwned(entries, owner)) {
+                    write(channel, entries);
+                    LOG.debug("{} released its ports.", owner);
+                }
+            }
+        }
+    }
+
+    private int find(String name, int base, int range, Set<Integer> taken) throws IOException {
+        int last = Math.min(base + range, MAX_PORT);
+        for (int port = base; port <= last; port++) {
+            if (!taken.contains(port) && isFree(port)) {
+                return port;
+            }
+        }
+        throw new IOException(String.format("No available port for %s in range %d - %d.", name, base, last));
+    }
+
+    private boolean isFree(int port) {
+        try {
+            return binder.findAvailablePort(port, 0) == port;
+        } catch (BindException e) {
+            return false;
+        }
+    }
+
+    private void expire(Properties entries, long now) {
+        for (String port : entries.stringPropertyNames()) {
+            String[] values = entries.getProperty(port).split(SEPARATOR);
+            long reservedAt = values.length == 3 ? parseLong(values[2]) : 0L;
+            if (now - reservedAt > LEASE && isFree(Integer.parseInt(port))) {
+                LOG.debug("Reservation of port {} by {} has expired.", port, values[0]);
+                entries.remove(port);
+            }
+        }
+    }
+
+    private static Map<String, Integer> owned(Properties entries, String owner) {
+        Map<String, Integer> ports = new LinkedHashMap<>();
+        for (String port : entries.stringPropertyNames()) {
+            String[] values = entries.getProperty(port).split(SEPARATOR);
+            if (values.length == 3 && values[0].equals(owner)) {
+                ports.put(values[1], Integer.valueOf(port));
+            }
+        }
+        return ports;
+    }
+
+    private static boolean removeOwned(Properties entries, String owner) {
+        boolean removed = false;
+        for (String port : entries.stringPropertyNames()) {
+            if (entries.getProperty(port).startsWith(owner + SEPARATOR)) {
+                entries.remove(port);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private static String entry(String owner, String name, long now) {
+        return owner + SEPARATOR + name + SEPARATOR + now;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static Properties read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer, buffer.position());
+        }
+        Properties entries = new Properties();
+        entries.load(new ByteArrayInputStream(buffer.array()));
+        return entries;
+    }
+
+    private static void write(FileChannel channel, Properties entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entries.store(out, "ports reserved by payara-micro instances");
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        channel.truncate(0L);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public String toString() {
+        return "PortRegistry[" + file + "]";
+    }
+}
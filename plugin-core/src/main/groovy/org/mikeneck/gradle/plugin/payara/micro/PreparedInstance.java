@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Instance root prepared ahead of boot, with a stamp of payara version, domain.xml and profile it is prepared for.
+ * <p>
+ * The stamp is copied into instance roots seeded with it, so that a root seeded from an outdated preparation is refreshed.
+ */
+public final class PreparedInstance {
+
+    public static final String STAMP_FILE = "prepared-instance.properties";
+
+    private static final String PAYARA_VERSION = "payaraVersion";
+
+    private static final String DOMAIN_XML = "domainXml";
+
+    private static final String DOMAIN_XML_HASH = "domainXmlHash";
+
+    private static final String PROFILE = "profile";
+
+    private static final String NO_CLUSTER = "noCluster";
+
+    private static final String[] SEEDED = {"config", "docroot", STAMP_FILE};
+
+    private final File dir;
+
+    private final Properties stamp;
+
+    private PreparedInstance(File dir, Properties stamp) {
+        this.dir = dir;
+        this.stamp = stamp;
+    }
+
+    /**
+     * install files into the directory and write its stamp.
+     * @param dir empty directory to be prepared.
+     * @param configFileUri uri of domain.xml.
+     * @param profile profile for which the instance root is prepared.
+     * @return prepared instance.
+     * @throws IOException when domain.xml is not installed or the stamp cannot be written.
+     */
+    public static PreparedInstance prepare(File dir, String configFileUri, BootProfile profile) throws IOException {
+        InstanceRootInstaller.install(dir, configFileUri);
+        File domainXml = new File(dir, "config/domain.xml");
+        if (!domainXml.isFile()) {
+            throw new IOException(String.format("domain.xml [%s] is not installed to %s.", configFileUri, dir));
+        }
+        Properties stamp = new Properties();
+        stamp.setProperty(PAYARA_VERSION, PayaraVersion.current());
+        stamp.setProperty(DOMAIN_XML, configFileUri);
+        stamp.setProperty(DOMAIN_XML_HASH, ContentHash.of(domainXml));
+        stamp.setProperty(PROFILE, profile.getId());
+        stamp.setProperty(NO_CLUSTER, Boolean.toString(profile.isNoCluster()));
+        try (OutputStream out = Files.newOutputStream(new File(dir, STAMP_FILE).toPath())) {
+            stamp.store(out, "instance root prepared for payara-micro");
+        }
+        return new PreparedInstance(dir, stamp);
+    }
+
+    /**
+     * @param dir prepared directory, or instance root seeded with it.
+     * @return prepared instance, or {@code null} if the directory has no stamp.
+     * @throws IOException when the stamp cannot be read.
+     */
+    public static PreparedInstance load(File dir) throws IOException {
+        File file = new File(dir, STAMP_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties stamp = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            stamp.load(in);
+        }
+        return new PreparedInstance(dir, stamp);
+    }
+
+    /**
+     * seed the instance root with this, unless it is already seeded with the same preparation.
+     * files seeded from another preparation or installed on boot are replaced.
+     * @param rootDir instance root of payara-micro.
+     * @return {@code true} if the instance root is seeded.
+     * @throws IOException when files are not linked nor copied.
+     */
+    public boolean seed(File rootDir) throws IOException {
+        PreparedInstance seeded = load(rootDir);
+        if (seeded != null && stamp.equals(seeded.stamp)) {
+            return false;
+        }
+        clear(rootDir);
+        InstanceRootCache.seed(dir, rootDir);
+        return true;
+    }
+
+    /**
+     * remove files seeded from a prepared instance, so that payara-micro installs them on boot.
+     * instance roots which are not seeded are left as they are.
+     * @param rootDir instance root of payara-micro.
+     * @return {@code true} if seeded files are removed.
+     * @throws IOException when the stamp cannot be read.
+     */
+    public static boolean unseed(File rootDir) throws IOException {
+        if (load(rootDir) == null) {
+            return false;
+        }
+        clear(rootDir);
+        return true;
+    }
+
+    private static void clear(File rootDir) {
+        for (String name : SEEDED) {
+            InstanceRootCache.deleteQuietly(new File(rootDir, name).toPath());
+        }
+    }
+
+    public String getProfile() {
+        return stamp.getProperty(PROFILE);
+    }
+
+    public boolean isNoCluster() {
+        return Boolean.parseBoolean(stamp.getProperty(NO_CLUSTER));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[payara %s, profile %s]", dir, stamp.getProperty(PAYARA_VERSION), getProfile());
+    }
+}
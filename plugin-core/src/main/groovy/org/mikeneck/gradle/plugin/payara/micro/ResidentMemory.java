@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Resident set size of this JVM, read from {@code /proc/self/status}.
+ */
+public final class ResidentMemory {
+
+    private static final File STATUS = new File("/proc/self/status");
+
+    private static final String VM_RSS = "VmRSS:";
+
+    /**
+     * returned when resident set size is not available on the platform.
+     */
+    public static final long UNKNOWN = -1L;
+
+    private ResidentMemory() {
+    }
+
+    /**
+     * @return resident set size in kilobytes, or {@link #UNKNOWN} if it is not available(other than linux).
+     */
+    public static long currentKb() {
+        if (!STATUS.canRead()) {
+            return UNKNOWN;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(STATUS), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(VM_RSS)) {
+                    String value = line.substring(VM_RSS.length()).trim();
+                    int space = value.indexOf(' ');
+                    return Long.parseLong(space < 0 ? value : value.substring(0, space));
+                }
+            }
+        } catch (IOException | NumberFormatException ignore) {
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.micro;
+
+/**
+ * Size of http-thread-pool of payara-micro, given explicitly or derived from the number of cores and workload.
+ * <p>
+ * Auto sizing follows {@code threads = cores / (1 - blocking coefficient)}, where blocking coefficient is
+ * the ratio of time a request thread waits for I/O. {@link #NOT_SPECIFIED} leaves payara-micro's default.
+ */
+public final class ThreadPoolSizing {
+
+    public static final int NOT_SPECIFIED = 0;
+
+    public enum Workload {
+        CPU_BOUND("cpu-bound", 0.0),
+        BLOCKING_IO("blocking-io", 0.8);
+
+        private final String id;
+
+        private final double blockingCoefficient;
+
+        Workload(String id, double blockingCoefficient) {
+            this.id = id;
+            this.blockingCoefficient = blockingCoefficient;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @param id {@code cpu-bound} or {@code blocking-io}.
+         * @return workload for id, or {@code null} if id is unknown.
+         */
+        public static Workload of(String id) {
+            for (Workload workload : values()) {
+                if (workload.id.equalsIgnoreCase(id)) {
+                    return workload;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final int min;
+
+    private final int max;
+
+    private final String origin;
+
+    private ThreadPoolSizing(int min, int max, String origin) {
+        this.min = min;
+        this.max = max;
+        this.origin = origin;
+    }
+
+    /**
+     * @param min explicit minimum threads, or {@link #NOT_SPECIFIED}.
+     * @param max explicit maximum threads, or {@link #NOT_SPECIFIED}.
+     * @param auto derive unspecified values from cores and workload.
+     * @param workload workload of the application, used only when auto is {@code true}.
+     * @param cores available cores.
+     * @return resolved sizing, explicit values take precedence over derived ones.
+     */
+    public static ThreadPoolSizing resolve(int min, int max, boolean auto, Workload workload, int cores) {
+        if (!auto) {
+            return new ThreadPoolSizing(min, max, "explicit");
+        }
+        int autoMin = cores;
+        int autoMax = workload == Workload.CPU_BOUND ?
+                cores + 1 :
+                Math.max(cores, (int) Math.ceil(cores / (1.0 - workload.blockingCoefficient)));
+        // a derived minimum never exceeds an explicit maximum
+        int resolvedMin = min != NOT_SPECIFIED ? min : max != NOT_SPECIFIED ? Math.min(autoMin, max) : autoMin;
+        int resolvedMax = max == NOT_SPECIFIED ? Math.max(autoMax, resolvedMin) : max;
+        return new ThreadPoolSizing(resolvedMin, resolvedMax, String.format("auto: %d cores, %s", cores, workload.getId()));
+    }
+
+    /**
+     * @return {@code true} if neither min nor max is specified and payara-micro's default is used.
+     */
+    public boolean isDefault() {
+        return min == NOT_SPECIFIED && max == NOT_SPECIFIED;
+    }
+
+    /**
+     * apply this sizing to payara-micro.
+     * @param payaraMicro payara-micro to be configured.
+     */
+    public void applyTo(AlternativePayaraMicro payaraMicro) {
+        if (min != NOT_SPECIFIED) {
+            payaraMicro.setMinHttpThreads(min);
+        }
+        if (max != NOT_SPECIFIED) {
+            payaraMicro.setMaxHttpThreads(max);
+        }
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        if (isDefault()) {
+            return "payara-micro default";
+        }
+        return String.format("min=%s, max=%s(%s)", describe(min), describe(max), origin);
+    }
+
+    private static String describe(int threads) {
+        return threads == NOT_SPECIFIED ? "default" : Integer.toString(threads);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import org.mikeneck.gradle.plugin.payara.PayaraPlugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client of {@link StopServer}, which is used to talk with running payara-micro from another build.
+ */
+public class ControlClient implements Redeployer {
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    private static final int READ_TIMEOUT = 60000;
+
+    private static final long POLLING_INTERVAL = 100L;
+
+    private final int stopPort;
+
+    private final String stopCommand;
+
+    public ControlClient(int stopPort, String stopCommand) {
+        this.stopPort = stopPort;
+        this.stopCommand = stopCommand;
+    }
+
+    /**
+     * @return settings of running payara-micro, or {@code null} if no payara-micro is listening on stop port.
+     * @throws IOException when the server answers with an error.
+     */
+    public String settings() throws IOException {
+        HttpURLConnection con = null;
+        try {
+            con = open(StopServer.SETTINGS_PATH, "GET");
+            int status = con.getResponseCode();
+            if (status != StopServer.OK) {
+                throw new IOException(String.format("StopServer answered status %d for settings.", status));
+            }
+            List<String> lines = readLines(con.getInputStream());
+            return lines.isEmpty() ? "" : lines.get(0);
+        } catch (ConnectException e) {
+            return null;
+        } finally {
+            disconnect(con);
+        }
+    }
+
+    /**
+     * @return lifecycle state and deployed applications of running payara-micro as JSON, or {@code null} if no payara-micro is listening on stop port.
+     * @throws IOException when the server answers with an error.
+     */
+    public String status() throws IOException {
+        return getJson(StopServer.STATUS_PATH);
+    }
+
+    /**
+     * @return JVM metrics of running payara-micro as JSON, or {@code null} if no payara-micro is listening on stop port.
+     * @throws IOException when the server answers with an error.
+     */
+    public String metrics() throws IOException {
+        return getJson(StopServer.METRICS_PATH);
+    }
+
+    private String getJson(String path) throws IOException {
+        HttpURLConnection con = null;
+        try {
+            con = open(path, "GET");
+            int status = con.getResponseCode();
+            if (status != StopServer.OK) {
+                throw new IOException(String.format("StopServer answered status %d for %s.", status, path));
+            }
+            StringBuilder sb = new StringBuilder();
+            for (String line : readLines(con.getInputStream())) {
+                sb.append(line).append('\n');
+            }
+            return sb.toString();
+        } catch (ConnectException e) {
+            return null;
+        } finally {
+            disconnect(con);
+        }
+    }
+
+    /**
+     * @param archives archives to be redeployed.
+     * @return names of redeployed and skipped applications.
+     * @throws IOException when the server fails to redeploy.
+     */
+    @Override
+    public Redeployment redeploy(List<File> archives) throws IOException {
+        StringBuilder sb = new StringBuilder(stopCommand).append('\n');
+        for (File archive : archives) {
+            sb.append(archive.getAbsolutePath()).append('\n');
+        }
+        HttpURLConnection con = null;
+        try {
+            con = open(StopServer.REDEPLOY_PATH, PayaraPlugin.STOP_METHOD);
+            send(con, sb.toString());
+            int status = con.getResponseCode();
+            if (status == StopServer.FORBIDDEN) {
+                throw new IOException("StopServer refused redeploy, stop command is different.");
+            }
+            if (status != StopServer.OK) {
+                throw new IOException(String.format("StopServer answered status %d for redeploy: %s", status, readLines(con.getErrorStream())));
+            }
+            return Redeployment.parse(readLines(con.getInputStream()));
+        } finally {
+            disconnect(con);
+        }
+    }
+
+    /**
+     * send stop command.
+     * @throws IOException when the server refuses stop command.
+     */
+    public void stop() throws IOException {
+        HttpURLConnection con = null;
+        try {
+            con = open(StopServer.STOP_PATH, PayaraPlugin.STOP_METHOD);
+            send(con, stopCommand);
+            int status = con.getResponseCode();
+            if (status == StopServer.FORBIDDEN) {
+                throw new IOException("StopServer refused stop command, it is different.");
+            }
+            if (status != StopServer.OK) {
+                throw new IOException(String.format("StopServer answered status %d for stop command.", status));
+            }
+        } finally {
+            disconnect(con);
+        }
+    }
+
+    /**
+     * wait for StopServer to close and http port to be released.
+     * @param httpPort http port of payara-micro.
+     * @param timeoutMillis time to wait.
+     * @return {@code true} if payara-micro has gone within timeout.
+     */
+    public boolean awaitShutdown(int httpPort, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                if (settingsUnavailable() && isAvailable(httpPort)) {
+                    return true;
+                }
+                Thread.sleep(POLLING_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private boolean settingsUnavailable() {
+        try {
+            return settings() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isAvailable(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        URL url = new URL(String.format("http://localhost:%d%s", stopPort, path));
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setConnectTimeout(CONNECT_TIMEOUT);
+        con.setReadTimeout(READ_TIMEOUT);
+        con.setRequestMethod(method);
+        con.setDoInput(true);
+        return con;
+    }
+
+    private static void send(HttpURLConnection con, String body) throws IOException {
+        con.setDoOutput(true);
+        try (Writer writer = new OutputStreamWriter(con.getOutputStream(), "UTF-8")) {
+            writer.append(body).flush();
+        }
+    }
+
+    private static List<String> readLines(InputStream stream) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (stream == null) {
+            return lines;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static void disconnect(HttpURLConnection con) {
+        if (con != null) {
+            con.disconnect();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches directories recursively with {@link java.nio.file.WatchService}.
+ * Change events are batched until no event comes within debounce window,
+ * then {@link Listener} is notified once with all changed paths.
+ */
+public class DirectoryWatcher implements Runnable, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    private final long debounce;
+
+    private final Listener listener;
+
+    public DirectoryWatcher(Collection<File> roots, long debounce, Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounce = debounce;
+        this.listener = listener;
+        for (File root : roots) {
+            if (root.isDirectory()) {
+                registerAll(root.toPath());
+            }
+        }
+    }
+
+    private void registerAll(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                keys.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        LOG.debug("Start watching {}.", keys.values());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changes = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                // collect events until debounce window passes without events
+                while (key != null) {
+                    collect(key, changes);
+                    key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+                }
+                if (!changes.isEmpty()) {
+                    LOG.debug("{} changes detected.", changes.size());
+                    notifyListener(changes);
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("DirectoryWatcher is interrupted.");
+        } catch (ClosedWatchServiceException e) {
+            LOG.debug("DirectoryWatcher is closed.");
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changes) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || dir == null) {
+                if (dir != null) {
+                    changes.add(dir);
+                }
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            changes.add(path);
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerAll(path);
+                } catch (IOException e) {
+                    LOG.warn("Cannot watch directory {}.", path, e);
+                }
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    private void notifyListener(Set<Path> changes) {
+        try {
+            listener.onChange(changes);
+        } catch (Exception e) {
+            LOG.warn("An error has occurred while handling changes.", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        LOG.debug("Stop watching.");
+        watchService.close();
+    }
+
+    /**
+     * Receives batched changes.
+     */
+    public interface Listener {
+        void onChange(Set<Path> changes) throws Exception;
+    }
+}
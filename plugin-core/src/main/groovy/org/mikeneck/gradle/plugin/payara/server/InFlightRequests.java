@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts requests being processed by payara-micro, from workers of http-thread-pool.
+ * <p>
+ * An idle worker waits for a task in {@code getTask()} of grizzly's thread pool,
+ * so a worker without such frame in its stack is regarded as processing a request.
+ */
+final class InFlightRequests {
+
+    private static final String WORKER_PREFIX = "http-thread-pool";
+
+    private static final int STACK_DEPTH = 32;
+
+    private InFlightRequests() {
+    }
+
+    static int count() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int busy = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds(), STACK_DEPTH)) {
+            if (info != null && info.getThreadName().startsWith(WORKER_PREFIX) && !isIdle(info.getStackTrace())) {
+                busy++;
+            }
+        }
+        return busy;
+    }
+
+    private static boolean isIdle(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if ("getTask".equals(frame.getMethodName()) && frame.getClassName().contains("ThreadPool")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
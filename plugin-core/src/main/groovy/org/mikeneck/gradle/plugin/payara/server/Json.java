@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import java.util.Collection;
+
+/**
+ * Minimal JSON writing for control plane responses and reports.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * @param value string to be written, {@code null} is written as {@code null}.
+     * @return JSON string literal, in which quotes, backslashes and control characters are escaped.
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    public static String array(Collection<String> values) {
+        StringBuilder sb = new StringBuilder("[");
+        String separator = "";
+        for (String value : values) {
+            sb.append(separator).append(quote(value));
+            separator = ", ";
+        }
+        return sb.append(']').toString();
+    }
+}
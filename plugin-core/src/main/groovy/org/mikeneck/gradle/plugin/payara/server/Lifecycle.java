@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publishes {@link LifecycleState} of payara-micro to waiting threads and listeners.
+ */
+public class Lifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Lifecycle.class);
+
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private LifecycleState state = LifecycleState.NEW;
+
+    private Throwable failure;
+
+    public LifecycleState getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return cause of {@link LifecycleState#FAILED}, or {@code null}.
+     */
+    public Throwable getFailure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void publish(LifecycleState next) {
+        lock.lock();
+        try {
+            if (state.isTerminal()) {
+                LOG.debug("Lifecycle is already {}, ignoring {}.", state, next);
+                return;
+            }
+            LOG.debug("Lifecycle {} -> {}.", state, next);
+            state = next;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Listener listener : listeners) {
+            listener.onChange(next);
+        }
+    }
+
+    public void fail(Throwable cause) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = cause;
+            }
+        } finally {
+            lock.unlock();
+        }
+        publish(LifecycleState.FAILED);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * wait for one of states or {@link LifecycleState#FAILED}.
+     * @param timeout time to wait.
+     * @param unit unit of timeout.
+     * @param targets states to wait for.
+     * @return current state, which is not one of targets if timed out.
+     * @throws InterruptedException when interrupted.
+     */
+    public LifecycleState await(long timeout, TimeUnit unit, LifecycleState... targets) throws InterruptedException {
+        List<LifecycleState> expected = Arrays.asList(targets);
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!expected.contains(state) && state != LifecycleState.FAILED) {
+                if (nanos <= 0L) {
+                    return state;
+                }
+                nanos = changed.awaitNanos(nanos);
+            }
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * wait for one of states or {@link LifecycleState#FAILED} without timeout.
+     * @param targets states to wait for.
+     * @return current state.
+     * @throws InterruptedException when interrupted.
+     */
+    public LifecycleState await(LifecycleState... targets) throws InterruptedException {
+        List<LifecycleState> expected = Arrays.asList(targets);
+        lock.lock();
+        try {
+            while (!expected.contains(state) && state != LifecycleState.FAILED) {
+                changed.await();
+            }
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives state changes in the thread which publishes state.
+     */
+    public interface Listener {
+        void onChange(LifecycleState state);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+/**
+ * States of payara-micro managed by {@link PayaraMicroServer}.
+ */
+public enum LifecycleState {
+
+    /**
+     * payara-micro is not started yet.
+     */
+    NEW,
+
+    /**
+     * payara-micro is bootstrapping.
+     */
+    BOOTING,
+
+    /**
+     * all archives are deployed.
+     */
+    DEPLOYED,
+
+    /**
+     * archives are deployed and readiness probe is passed.
+     */
+    READY,
+
+    /**
+     * stop command has come, waiting for in-flight requests to finish.
+     */
+    DRAINING,
+
+    /**
+     * payara-micro is shutting down.
+     */
+    STOPPING,
+
+    /**
+     * payara-micro is shut down.
+     */
+    STOPPED,
+
+    /**
+     * payara-micro failed to boot or shutdown.
+     */
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == STOPPED || this == FAILED;
+    }
+}
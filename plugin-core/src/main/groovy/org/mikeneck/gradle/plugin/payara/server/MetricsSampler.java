@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples JVM metrics from platform MXBeans and request statistics of payara-micro at fixed interval,
+ * and writes them into a CSV file, one line per sample.
+ * Min/avg/max of each column are kept in memory, and summarized when the sampler is closed.
+ */
+public class MetricsSampler implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsSampler.class);
+
+    private static final long KB = 1024L;
+
+    /**
+     * columns of time series. cumulative columns are summarized by their last value.
+     */
+    enum Column {
+        ELAPSED_MS("elapsedMs", true),
+        HEAP_USED_KB("heapUsedKb", false),
+        HEAP_COMMITTED_KB("heapCommittedKb", false),
+        NON_HEAP_USED_KB("nonHeapUsedKb", false),
+        THREADS("threads", false),
+        DAEMON_THREADS("daemonThreads", false),
+        LOADED_CLASSES("loadedClasses", false),
+        GC_COUNT("gcCount", true),
+        GC_TIME_MS("gcTimeMs", true),
+        BUSY_HTTP_THREADS("busyHttpThreads", false),
+        REQUESTS("requests", true),
+        REQUESTS_PER_SEC("requestsPerSec", false);
+
+        private final String header;
+
+        private final boolean cumulative;
+
+        Column(String header, boolean cumulative) {
+            this.header = header;
+            this.cumulative = cumulative;
+        }
+    }
+
+    private final File file;
+
+    private final long interval;
+
+    private final AlternativePayaraMicro payaraMicro;
+
+    private final long[] min = new long[Column.values().length];
+
+    private final long[] max = new long[Column.values().length];
+
+    private final long[] sum = new long[Column.values().length];
+
+    private final long[] last = new long[Column.values().length];
+
+    private int samples;
+
+    private long startedAt;
+
+    private long lastRequests = -1L;
+
+    private long lastSampledAt;
+
+    private Writer writer;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param file CSV file to be written.
+     * @param interval milliseconds between samples.
+     * @param payaraMicro payara-micro from which request statistics are read.
+     */
+    public MetricsSampler(File file, long interval, AlternativePayaraMicro payaraMicro) {
+        this.file = file;
+        this.interval = interval;
+        this.payaraMicro = payaraMicro;
+    }
+
+    /**
+     * write header and start sampling on a daemon thread.
+     * @throws IOException when the file cannot be written.
+     */
+    public synchronized void start() throws IOException {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8));
+        StringBuilder header = new StringBuilder();
+        for (Column column : Column.values()) {
+            header.append(header.length() == 0 ? "" : ",").append(column.header);
+        }
+        writer.write(header.append('\n').toString());
+        startedAt = System.currentTimeMillis();
+        lastSampledAt = startedAt;
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "payara-metrics-sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, 0L, interval, TimeUnit.MILLISECONDS);
+        LOG.debug("Sampling metrics every {} ms into {}.", interval, file);
+    }
+
+    synchronized void sample() {
+        if (writer == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        long gcCount = 0L;
+        long gcTime = 0L;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0L, gc.getCollectionCount());
+            gcTime += Math.max(0L, gc.getCollectionTime());
+        }
+        long requests = payaraMicro.getRequestCount();
+        long rate = requests < 0L || lastRequests < 0L || now == lastSampledAt ? 0L :
+                (requests - lastRequests) * TimeUnit.SECONDS.toMillis(1) / (now - lastSampledAt);
+        lastRequests = requests;
+        lastSampledAt = now;
+        long[] values = new long[Column.values().length];
+        values[Column.ELAPSED_MS.ordinal()] = now - startedAt;
+        values[Column.HEAP_USED_KB.ordinal()] = memory.getHeapMemoryUsage().getUsed() / KB;
+        values[Column.HEAP_COMMITTED_KB.ordinal()] = memory.getHeapMemoryUsage().getCommitted() / KB;
+        values[Column.NON_HEAP_USED_KB.ordinal()] = memory.getNonHeapMemoryUsage().getUsed() / KB;
+        values[Column.THREADS.ordinal()] = threads.getThreadCount();
+        values[Column.DAEMON_THREADS.ordinal()] = threads.getDaemonThreadCount();
+        values[Column.LOADED_CLASSES.ordinal()] = classLoading.getLoadedClassCount();
+        values[Column.GC_COUNT.ordinal()] = gcCount;
+        values[Column.GC_TIME_MS.ordinal()] = gcTime;
+        values[Column.BUSY_HTTP_THREADS.ordinal()] = InFlightRequests.count();
+        values[Column.REQUESTS.ordinal()] = requests;
+        values[Column.REQUESTS_PER_SEC.ordinal()] = rate;
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            line.append(i == 0 ? "" : ",").append(values[i]);
+            min[i] = samples == 0 ? values[i] : Math.min(min[i], values[i]);
+            max[i] = samples == 0 ? values[i] : Math.max(max[i], values[i]);
+            sum[i] += values[i];
+            last[i] = values[i];
+        }
+        samples++;
+        try {
+            writer.write(line.append('\n').toString());
+            writer.flush();
+        } catch (IOException e) {
+            LOG.warn("Fail to write metrics to {}, sampling stops.", file, e);
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * @return min/avg/max of each column, or last value of cumulative columns.
+     */
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder(String.format("Metrics of %d samples in %s(min/avg/max):", samples, file));
+        if (samples == 0) {
+            return sb.toString();
+        }
+        for (Column column : Column.values()) {
+            int i = column.ordinal();
+            sb.append("\n  ").append(column.header).append(": ");
+            if (column.cumulative) {
+                sb.append(last[i]);
+            } else {
+                sb.append(min[i]).append('/').append(sum[i] / samples).append('/').append(max[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * take the last sample and stop sampling.
+     * @throws IOException when the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(interval, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            sample();
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -16,20 +16,48 @@
 package org.mikeneck.gradle.plugin.payara.server;
 
 import fish.payara.micro.BootstrapException;
-import fish.payara.micro.PayaraMicroRuntime;
+import org.glassfish.embeddable.GlassFishException;
 import org.gradle.api.GradleException;
 import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.micro.BootTimings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
-public abstract class PayaraMicroServer implements Runnable {
+public abstract class PayaraMicroServer implements Runnable, Redeployer {
 
     protected static final Logger LOG = LoggerFactory.getLogger(PayaraMicroServer.class);
 
     private final CountDownLatch latch;
 
+    private final Lifecycle lifecycle = new Lifecycle();
+
+    private final BootTimings bootTimings = new BootTimings();
+
+    private volatile AlternativePayaraMicro payaraMicro;
+
+    private ReadinessProbe readinessProbe;
+
+    /**
+     * interval to count in-flight requests while draining.
+     */
+    private static final long DRAIN_INTERVAL = 100L;
+
+    private long drainTimeout;
+
+    private File metricsFile;
+
+    private long metricsInterval;
+
+    private MetricsSampler metricsSampler;
+
+    private volatile String metricsSummary;
+
     public PayaraMicroServer(CountDownLatch latch) {
         this.latch = latch;
     }
@@ -37,26 +65,219 @@ public abstract class PayaraMicroServer implements Runnable {
     @Override
     public void run() {
         LOG.debug("Creating payara-micro instance.");
-        AlternativePayaraMicro payaraMicro = createPayaraMicro();
+        lifecycle.publish(LifecycleState.BOOTING);
+        AlternativePayaraMicro payaraMicro = null;
         try {
+            long mark = bootTimings.start();
+            payaraMicro = createPayaraMicro();
+            payaraMicro.setBootTimings(bootTimings);
+            if (metricsFile != null && metricsInterval > 0L) {
+                payaraMicro.enableRequestMonitoring();
+            }
+            bootTimings.record("createPayaraMicro", mark);
             LOG.debug("Starting payara-micro.");
-            PayaraMicroRuntime runtime = payaraMicro.bootStrap();
+            mark = bootTimings.start();
+            payaraMicro.bootStrap();
+            bootTimings.record("bootStrap", mark);
+            this.payaraMicro = payaraMicro;
+            lifecycle.publish(LifecycleState.DEPLOYED);
+            if (readinessProbe != null) {
+                LOG.debug("Waiting for readiness probe {}.", readinessProbe);
+                mark = bootTimings.start();
+                readinessProbe.await(payaraMicro.getBoundHttpPort());
+                bootTimings.record("readinessProbe", mark);
+            }
             LOG.info("Payara-micro server is now running.");
+            lifecycle.publish(LifecycleState.READY);
+            startMetricsSampler(payaraMicro);
             latch.await();
-            try {
-                LOG.debug("Shutting down payara-micro server.");
-                runtime.shutdown();
-                LOG.info("Payara-micro server is shut down.");
-            } catch (BootstrapException e) {
-                LOG.warn("Error has occurred while shutdown payara-micro server.", e);
-                throw new GradleException("Fail to shutdown payara-micro server.", e);
-            }
-        } catch (BootstrapException e) {
+            drain(payaraMicro);
+        } catch (BootstrapException | IOException | RuntimeException e) {
             LOG.error("Error has occurred while bootstrapping payara-micro server.", e);
+            stopMetricsSampler();
+            releaseQuietly(payaraMicro);
+            lifecycle.fail(e);
             throw new GradleException("Fail to start payara-micro server.", e);
         } catch (InterruptedException e) {
             LOG.warn("Error has occurred while payara-micro server is running.", e);
         }
+        try {
+            LOG.debug("Shutting down payara-micro server.");
+            stopMetricsSampler();
+            lifecycle.publish(LifecycleState.STOPPING);
+            this.payaraMicro = null;
+            payaraMicro.shutdown();
+            LOG.info("Payara-micro server is shut down.");
+            lifecycle.publish(LifecycleState.STOPPED);
+        } catch (BootstrapException e) {
+            LOG.warn("Error has occurred while shutdown payara-micro server.", e);
+            lifecycle.fail(e);
+            throw new GradleException("Fail to shutdown payara-micro server.", e);
+        }
+    }
+
+    /**
+     * stop accepting new connections, then wait for in-flight requests to finish up to {@link #drainTimeout}.
+     */
+    private void drain(AlternativePayaraMicro payaraMicro) throws InterruptedException {
+        if (drainTimeout <= 0L) {
+            return;
+        }
+        lifecycle.publish(LifecycleState.DRAINING);
+        int closed = payaraMicro.stopAcceptingRequests();
+        if (closed > 0) {
+            LOG.debug("Server sockets of {} listeners are closed, no new connection is accepted.", closed);
+        } else {
+            LOG.info("Server sockets of listeners cannot be closed, new connections are accepted while draining.");
+        }
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        int inFlight = InFlightRequests.count();
+        while (inFlight > 0 && System.currentTimeMillis() < deadline) {
+            LOG.debug("Draining {} in-flight requests.", inFlight);
+            Thread.sleep(DRAIN_INTERVAL);
+            inFlight = InFlightRequests.count();
+        }
+        if (inFlight > 0) {
+            LOG.warn("{} requests are still in-flight after {} ms, shutting down.", inFlight, drainTimeout);
+        } else {
+            LOG.info("All in-flight requests have finished.");
+        }
+    }
+
+    private void startMetricsSampler(AlternativePayaraMicro payaraMicro) {
+        if (metricsFile == null || metricsInterval <= 0L) {
+            return;
+        }
+        MetricsSampler sampler = new MetricsSampler(metricsFile, metricsInterval, payaraMicro);
+        try {
+            sampler.start();
+            metricsSampler = sampler;
+        } catch (IOException e) {
+            LOG.warn("Fail to start sampling metrics into {}.", metricsFile, e);
+        }
+    }
+
+    private void stopMetricsSampler() {
+        MetricsSampler sampler = metricsSampler;
+        if (sampler == null) {
+            return;
+        }
+        metricsSampler = null;
+        try {
+            sampler.close();
+        } catch (IOException e) {
+            LOG.warn("Fail to write metrics into {}.", metricsFile, e);
+        }
+        metricsSummary = sampler.summary();
+        LOG.info(metricsSummary);
+    }
+
+    private static void releaseQuietly(AlternativePayaraMicro payaraMicro) {
+        if (payaraMicro == null) {
+            return;
+        }
+        try {
+            payaraMicro.release();
+        } catch (RuntimeException e) {
+            LOG.debug("Error has occurred while shutdown payara-micro server.", e);
+        }
+    }
+
+    /**
+     * @return timings of boot phases, which are complete when lifecycle reaches {@link LifecycleState#READY}.
+     */
+    public BootTimings getBootTimings() {
+        return bootTimings;
+    }
+
+    public Lifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    public void setReadinessProbe(ReadinessProbe readinessProbe) {
+        this.readinessProbe = readinessProbe;
+    }
+
+    /**
+     * @param drainTimeout milliseconds to wait for in-flight requests to finish after stop command, {@code 0} shuts down immediately.
+     */
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * sample JVM and request metrics while payara-micro is ready.
+     * @param metricsFile CSV file into which samples are written, {@code null} disables sampling.
+     * @param metricsInterval milliseconds between samples, {@code 0} disables sampling.
+     */
+    public void setMetrics(File metricsFile, long metricsInterval) {
+        this.metricsFile = metricsFile;
+        this.metricsInterval = metricsInterval;
+    }
+
+    /**
+     * @return min/avg/max summary of sampled metrics, or {@code null} if metrics are not sampled or payara-micro has not stopped.
+     */
+    public String getMetricsSummary() {
+        return metricsSummary;
+    }
+
+    /**
+     * @return names of deployed applications, or empty list if payara-micro is not running.
+     */
+    public List<String> getDeployedApplications() {
+        AlternativePayaraMicro micro = payaraMicro;
+        return micro == null ? Collections.<String>emptyList() : micro.getDeployedApplications();
+    }
+
+    /**
+     * @return http port to which payara-micro is bound, or {@link Integer#MIN_VALUE} if payara-micro is not running.
+     */
+    public int getBoundHttpPort() {
+        AlternativePayaraMicro micro = payaraMicro;
+        return micro == null ? Integer.MIN_VALUE : micro.getBoundHttpPort();
+    }
+
+    /**
+     * redeploy archives to the running payara-micro without restarting it.
+     * Archive files whose content is the same as deployed ones are skipped.
+     * @param archives archives to be redeployed.
+     * @return names of redeployed and skipped applications.
+     * @throws GlassFishException when deployer fails.
+     */
+    @Override
+    public Redeployment redeploy(List<File> archives) throws GlassFishException {
+        AlternativePayaraMicro micro = payaraMicro;
+        if (micro == null) {
+            throw new IllegalStateException("Payara-micro server is not running.");
+        }
+        Redeployment redeployment = new Redeployment();
+        for (File archive : archives) {
+            LOG.debug("Redeploying {}.", archive);
+            String name = micro.redeployIfChanged(archive);
+            if (name == null) {
+                redeployment.unchanged(micro.getDeployedApplication(archive));
+            } else {
+                redeployment.redeployed(name);
+            }
+        }
+        return redeployment;
+    }
+
+    /**
+     * deploy an archive under the context root to the running payara-micro.
+     * @param archive archive to be deployed.
+     * @param contextRoot context root of the application.
+     * @return name of deployed application.
+     * @throws GlassFishException when deployer fails.
+     */
+    public String deploy(File archive, String contextRoot) throws GlassFishException {
+        AlternativePayaraMicro micro = payaraMicro;
+        if (micro == null) {
+            throw new IllegalStateException("Payara-micro server is not running.");
+        }
+        LOG.debug("Deploying {} at {}.", archive, contextRoot);
+        return micro.deploy(archive, contextRoot);
     }
 
     protected abstract AlternativePayaraMicro createPayaraMicro();
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Confirms that deployed application answers HTTP request.
+ */
+public class ReadinessProbe {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadinessProbe.class);
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    private static final int READ_TIMEOUT = 5000;
+
+    private static final long INTERVAL = 200L;
+
+    private final String path;
+
+    private final long timeout;
+
+    /**
+     * @param path path on localhost to be probed.
+     * @param timeout milliseconds to wait for url to answer.
+     */
+    public ReadinessProbe(String path, long timeout) {
+        this.path = path.startsWith("/") ? path : "/" + path;
+        this.timeout = timeout;
+    }
+
+    /**
+     * wait for url to answer with status 2xx or 3xx.
+     * @param httpPort http port to which payara-micro is bound.
+     * @throws IOException when url doesn't answer within timeout.
+     * @throws InterruptedException when interrupted.
+     */
+    public void await(int httpPort) throws IOException, InterruptedException {
+        URL url = url(httpPort);
+        long deadline = System.currentTimeMillis() + timeout;
+        int status = -1;
+        while (System.currentTimeMillis() < deadline) {
+            status = probe(url);
+            if (200 <= status && status < 400) {
+                LOG.debug("Readiness probe {} is passed with status {}.", url, status);
+                return;
+            }
+            Thread.sleep(INTERVAL);
+        }
+        throw new IOException(String.format("Readiness probe %s is not passed within %d ms(last status %d).", url, timeout, status));
+    }
+
+    private URL url(int httpPort) throws MalformedURLException {
+        return new URL(String.format("http://localhost:%d%s", httpPort, path));
+    }
+
+    private int probe(URL url) {
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection) url.openConnection();
+            con.setConnectTimeout(CONNECT_TIMEOUT);
+            con.setReadTimeout(READ_TIMEOUT);
+            con.setInstanceFollowRedirects(false);
+            int status = con.getResponseCode();
+            InputStream body = status < 400 ? con.getInputStream() : con.getErrorStream();
+            if (body != null) {
+                body.close();
+            }
+            return status;
+        } catch (IOException e) {
+            LOG.debug("Readiness probe {} failed: {}", url, e.getMessage());
+            return -1;
+        } finally {
+            if (con != null) {
+                con.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
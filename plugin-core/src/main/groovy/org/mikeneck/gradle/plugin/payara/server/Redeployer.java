@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Redeploys archives to running payara-micro, either in this JVM({@link PayaraMicroServer}) or through {@link StopServer}({@link ControlClient}).
+ */
+public interface Redeployer {
+
+    /**
+     * @param archives archives to be redeployed. archive files with the same content as deployed ones are skipped.
+     * @return names of redeployed and skipped applications.
+     * @throws Exception when payara-micro fails to redeploy.
+     */
+    Redeployment redeploy(List<File> archives) throws Exception;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of {@link Redeployer#redeploy(java.util.List)}, names of applications redeployed and skipped because their archives are unchanged.
+ * It is sent by {@link StopServer} as lines of {@link #REDEPLOYED} or {@link #UNCHANGED} followed by a space and application name.
+ */
+public class Redeployment {
+
+    static final String REDEPLOYED = "redeployed";
+
+    static final String UNCHANGED = "unchanged";
+
+    private final List<String> redeployed = new ArrayList<>();
+
+    private final List<String> unchanged = new ArrayList<>();
+
+    public void redeployed(String appName) {
+        redeployed.add(appName);
+    }
+
+    public void unchanged(String appName) {
+        unchanged.add(appName);
+    }
+
+    /**
+     * @return names of applications which are undeployed and deployed again.
+     */
+    public List<String> getRedeployed() {
+        return Collections.unmodifiableList(redeployed);
+    }
+
+    /**
+     * @return names of applications whose archives have the same content as deployed ones.
+     */
+    public List<String> getUnchanged() {
+        return Collections.unmodifiableList(unchanged);
+    }
+
+    String toLines() {
+        StringBuilder sb = new StringBuilder();
+        for (String name : redeployed) {
+            sb.append(REDEPLOYED).append(' ').append(name).append('\n');
+        }
+        for (String name : unchanged) {
+            sb.append(UNCHANGED).append(' ').append(name).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static Redeployment parse(List<String> lines) {
+        Redeployment redeployment = new Redeployment();
+        for (String line : lines) {
+            int space = line.indexOf(' ');
+            String kind = space < 0 ? REDEPLOYED : line.substring(0, space);
+            String name = space < 0 ? line : line.substring(space + 1);
+            if (UNCHANGED.equals(kind)) {
+                redeployment.unchanged(name);
+            } else {
+                redeployment.redeployed(name);
+            }
+        }
+        return redeployment;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("redeployed %s, unchanged %s", redeployed, unchanged);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Snapshot of JVM metrics(heap, threads, GC and uptime) taken from platform MXBeans, answered at {@link StopServer#METRICS_PATH}.
+ */
+final class RuntimeMetrics {
+
+    private RuntimeMetrics() {
+    }
+
+    static String toJson() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"uptimeMillis\": ").append(ManagementFactory.getRuntimeMXBean().getUptime()).append(",\n");
+        sb.append("  \"heap\": ").append(usage(memory.getHeapMemoryUsage())).append(",\n");
+        sb.append("  \"nonHeap\": ").append(usage(memory.getNonHeapMemoryUsage())).append(",\n");
+        sb.append("  \"threads\": {\"live\": ").append(threads.getThreadCount())
+                .append(", \"daemon\": ").append(threads.getDaemonThreadCount())
+                .append(", \"peak\": ").append(threads.getPeakThreadCount()).append("},\n");
+        sb.append("  \"availableProcessors\": ").append(os.getAvailableProcessors()).append(",\n");
+        sb.append("  \"systemLoadAverage\": ").append(os.getSystemLoadAverage()).append(",\n");
+        sb.append("  \"gc\": [");
+        String separator = "\n";
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sb.append(separator)
+                    .append("    {\"name\": ").append(Json.quote(gc.getName()))
+                    .append(", \"count\": ").append(gc.getCollectionCount())
+                    .append(", \"timeMillis\": ").append(gc.getCollectionTime()).append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private static String usage(MemoryUsage usage) {
+        return String.format("{\"used\": %d, \"committed\": %d, \"max\": %d}", usage.getUsed(), usage.getCommitted(), usage.getMax());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.server;
+
+import org.glassfish.embeddable.GlassFishException;
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.plugins.ExtraPropertiesExtension;
+import org.mikeneck.gradle.plugin.payara.fork.LaunchSpec;
+import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * payara-micro shared by all projects in a build.
+ * <p>
+ * The server is kept in extra properties of the root project, started by the first project which uses it,
+ * and stopped when the build finishes. Each project deploys its war under its own context root.
+ * Settings of the project starting the server win, later projects only deploy into it.
+ */
+public class SharedPayaraServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedPayaraServer.class);
+
+    /**
+     * name of extra property of the root project holding the server.
+     */
+    public static final String EXTRA_PROPERTY = "payaraSharedServer";
+
+    /**
+     * seconds to wait for the server to shutdown at the end of build.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 60L;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    /**
+     * context root to path of the archive deployed at it.
+     */
+    private final Map<String, String> contextRoots = new LinkedHashMap<>();
+
+    private PayaraMicroServer payaraServer;
+
+    private StopServer stopServer;
+
+    private boolean stopped;
+
+    private SharedPayaraServer() {
+    }
+
+    /**
+     * @param gradle current build.
+     * @return shared server of the build, which may not be started yet.
+     */
+    public static SharedPayaraServer of(Gradle gradle) {
+        final ExtraPropertiesExtension ext = gradle.getRootProject().getExtensions().getExtraProperties();
+        synchronized (ext) {
+            if (ext.has(EXTRA_PROPERTY)) {
+                Object existing = ext.get(EXTRA_PROPERTY);
+                if (existing instanceof SharedPayaraServer) {
+                    return (SharedPayaraServer) existing;
+                }
+                throw new GradleException(String.format("Extra property %s of the root project is not a shared payara-micro server. " +
+                        "Put payara plugin on the buildscript classpath of the root project, so that all projects share the same plugin classes.", EXTRA_PROPERTY));
+            }
+            final SharedPayaraServer server = new SharedPayaraServer();
+            ext.set(EXTRA_PROPERTY, server);
+            gradle.addBuildListener(new BuildAdapter() {
+                @Override
+                public void buildFinished(BuildResult result) {
+                    server.stop();
+                }
+            });
+            return server;
+        }
+    }
+
+    /**
+     * start the server unless it is running.
+     * @param spec settings of the server, which are ignored if the server is already running.
+     * @param readyTimeout seconds to wait for the server to be ready.
+     * @return http port to which the server is bound.
+     */
+    public synchronized int start(final LaunchSpec spec, int readyTimeout) {
+        if (stopped) {
+            throw new IllegalStateException("Shared payara-micro server has been stopped.");
+        }
+        if (payaraServer != null) {
+            LOG.debug("Shared payara-micro server is already running on port {}.", payaraServer.getBoundHttpPort());
+            return payaraServer.getBoundHttpPort();
+        }
+        PayaraMicroServer server = new PayaraMicroServer(latch) {
+            @Override
+            protected AlternativePayaraMicro createPayaraMicro() {
+                return spec.configure(AlternativePayaraMicro.getInstance());
+            }
+        };
+        try {
+            stopServer = new StopServer(spec.getStopPort(), spec.getStopCommand(), latch, spec.getSettings(), server);
+        } catch (IOException e) {
+            throw new GradleException(String.format("StopServer is not available on port %d.", spec.getStopPort()), e);
+        }
+        daemon(stopServer, "payara-shared-stop-server").start();
+        daemon(server, "payara-shared-server").start();
+        LifecycleState state;
+        try {
+            state = server.getLifecycle().await(readyTimeout, TimeUnit.SECONDS, LifecycleState.READY, LifecycleState.STOPPED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            throw new GradleException("Starting shared payara-micro server is interrupted.", e);
+        }
+        if (state != LifecycleState.READY) {
+            stop();
+            throw new GradleException(String.format("Shared payara-micro server is not ready within %d seconds(%s).", readyTimeout, state),
+                    server.getLifecycle().getFailure());
+        }
+        payaraServer = server;
+        LOG.info("Shared payara-micro server is running on port {}.", server.getBoundHttpPort());
+        return server.getBoundHttpPort();
+    }
+
+    /**
+     * deploy the war under the context root, replacing one deployed from the same war.
+     * @param war war to be deployed.
+     * @param contextRoot context root which is not used by other wars.
+     * @return name of deployed application.
+     */
+    public synchronized String deploy(File war, String contextRoot) {
+        if (payaraServer == null) {
+            throw new IllegalStateException("Shared payara-micro server is not running.");
+        }
+        String path = war.getAbsolutePath();
+        String owner = contextRoots.get(contextRoot);
+        if (owner != null && !owner.equals(path)) {
+            throw new InvalidUserDataException(String.format("Context root %s is already used by %s.", contextRoot, owner));
+        }
+        try {
+            String name = payaraServer.deploy(war, contextRoot);
+            contextRoots.put(contextRoot, path);
+            return name;
+        } catch (GlassFishException e) {
+            throw new GradleException(String.format("Fail to deploy %s to shared payara-micro server.", path), e);
+        }
+    }
+
+    /**
+     * @return http port of the server, or {@link Integer#MIN_VALUE} if it is not running.
+     */
+    public synchronized int getBoundHttpPort() {
+        return payaraServer == null ? Integer.MIN_VALUE : payaraServer.getBoundHttpPort();
+    }
+
+    /**
+     * stop the server if it is started.
+     */
+    public synchronized void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        latch.countDown();
+        PayaraMicroServer server = payaraServer;
+        payaraServer = null;
+        if (server != null) {
+            LOG.info("Stopping shared payara-micro server.");
+            try {
+                if (server.getLifecycle().await(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS, LifecycleState.STOPPED) != LifecycleState.STOPPED) {
+                    LOG.warn("Shared payara-micro server is not stopped within {} seconds.", SHUTDOWN_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Stopping shared payara-micro server is interrupted.");
+            }
+        }
+        if (stopServer != null) {
+            try {
+                stopServer.close();
+            } catch (Exception e) {
+                LOG.debug("Error has occurred while closing StopServer.", e);
+            }
+            stopServer = null;
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -23,15 +23,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Because payara micro doesn't have stop command, stop port, this server is an alternative for it, using {@link com.sun.net.httpserver.HttpServer}.
+ * <p>
+ * It works as a local control plane of running payara-micro.
+ * <ul>
+ *     <li>{@link #STOP_PATH}(and {@code /} for older clients) - POST stop command to stop payara-micro.</li>
+ *     <li>{@link #SETTINGS_PATH} - GET settings of running payara-micro.</li>
+ *     <li>{@link #STATUS_PATH} - GET lifecycle state and deployed applications as JSON.</li>
+ *     <li>{@link #METRICS_PATH} - GET heap, threads, GC and uptime as JSON.</li>
+ *     <li>{@link #REDEPLOY_PATH} - POST archives to be redeployed without restarting payara-micro.</li>
+ * </ul>
+ * Requests are handled by a small bounded executor, so that slow clients never pile up threads in payara-micro's JVM.
  */
 public class StopServer implements Runnable, AutoCloseable {
 
@@ -41,28 +60,86 @@ public class StopServer implements Runnable, AutoCloseable {
 
     public static final int BAD_REQUEST = 400;
 
+    public static final int FORBIDDEN = 403;
+
+    public static final int NOT_FOUND = 404;
+
     public static final int METHOD_NOT_ALLOWED = 405;
 
+    public static final int SERVICE_UNAVAILABLE = 503;
+
+    public static final String STOP_PATH = "/stop";
+
+    public static final String SETTINGS_PATH = "/settings";
+
+    public static final String STATUS_PATH = "/status";
+
+    public static final String METRICS_PATH = "/metrics";
+
+    public static final String REDEPLOY_PATH = "/redeploy";
+
+    /**
+     * threads handling requests. requests over the queue are handled by the dispatcher thread, which throttles accepting.
+     */
+    private static final int HANDLER_THREADS = 2;
+
+    private static final int HANDLER_QUEUE = 16;
+
     private final HttpServer server;
 
+    private final ThreadPoolExecutor executor;
+
     private final String stopCommand;
 
+    private final String settings;
+
+    private final PayaraMicroServer payaraServer;
+
     private final CountDownLatch latch;
 
     private final CountDownLatch internal = new CountDownLatch(1);
 
-    public StopServer(int stopPort, String stopCommand, CountDownLatch latch) throws IOException {
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * @param stopPort port to listen.
+     * @param stopCommand command to stop.
+     * @param latch latch counted down with stop command.
+     * @param settings settings answered at {@link #SETTINGS_PATH}.
+     * @param payaraServer payara-micro to which archives are redeployed, or {@code null} if redeploy is not supported.
+     * @throws IOException when stop port is not available.
+     */
+    public StopServer(int stopPort, String stopCommand, CountDownLatch latch, String settings, PayaraMicroServer payaraServer) throws IOException {
         this.stopCommand = stopCommand;
         this.latch = latch;
+        this.settings = settings;
+        this.payaraServer = payaraServer;
         InetSocketAddress address = new InetSocketAddress("localhost", stopPort);
-        server = HttpServer.create(address, stopPort);
+        server = HttpServer.create(address, 0);
+        executor = new ThreadPoolExecutor(HANDLER_THREADS, HANDLER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(HANDLER_QUEUE), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "payara-stop-server-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
     @Override
     public void run() {
         LOG.info("Starting StopServer...");
-        Handler handler = new Handler();
-        server.createContext("/", handler);
+        Handler stopHandler = new Handler();
+        server.createContext("/", stopHandler);
+        server.createContext(STOP_PATH, stopHandler);
+        server.createContext(SETTINGS_PATH, new SettingsHandler());
+        server.createContext(STATUS_PATH, new StatusHandler());
+        server.createContext(METRICS_PATH, new MetricsHandler());
+        server.createContext(REDEPLOY_PATH, new RedeployHandler());
+        server.setExecutor(executor);
         server.start();
         LOG.info("StopServer started.");
         try {
@@ -74,12 +151,17 @@ public class StopServer implements Runnable, AutoCloseable {
 
     @Override
     public void close() throws Exception {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        internal.countDown();
         LOG.info("Stopping StopServer...");
         server.stop(0);
+        executor.shutdown();
         LOG.debug("StopServer is stopped.");
     }
 
-    private class Handler implements HttpHandler {
+    private abstract static class CommandHandler implements HttpHandler {
 
         private static final String UTF8 = "UTF-8";
 
@@ -87,8 +169,66 @@ public class StopServer implements Runnable, AutoCloseable {
 
         private static final String TEXT_PLAIN = "text/plain; charset=UTF-8";
 
+        private static final String APPLICATION_JSON = "application/json; charset=UTF-8";
+
+        BufferedReader toReader(InputStream st) {
+            return new BufferedReader(new InputStreamReader(st));
+        }
+
+        List<String> readLines(InputStream st) throws IOException {
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = toReader(st)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        lines.add(line);
+                    }
+                }
+            }
+            return lines;
+        }
+
+        void sendMessage(HttpExchange http, int status, String msg) throws IOException {
+            send(http, status, TEXT_PLAIN, msg);
+        }
+
+        void sendJson(HttpExchange http, String json) throws IOException {
+            send(http, OK, APPLICATION_JSON, json);
+        }
+
+        /**
+         * answers body for GET request, or {@link #METHOD_NOT_ALLOWED} for other methods.
+         */
+        void answerGet(HttpExchange http, String json) throws IOException {
+            http.getRequestBody().close();
+            if ("GET".equalsIgnoreCase(http.getRequestMethod())) {
+                sendJson(http, json);
+            } else {
+                sendMessage(http, METHOD_NOT_ALLOWED, "Method is different.\n");
+            }
+        }
+
+        private void send(HttpExchange http, int status, String contentType, String msg) throws IOException {
+            byte[] bytes = msg.getBytes(UTF8);
+            http.getResponseHeaders().add(CONTENT_TYPE, contentType);
+            http.sendResponseHeaders(status, bytes.length);
+            try(OutputStream body = http.getResponseBody()) {
+                body.write(bytes);
+                body.flush();
+            }
+        }
+    }
+
+    private class Handler extends CommandHandler {
+
         @Override
         public void handle(HttpExchange http) throws IOException {
+            String path = http.getRequestURI().getPath();
+            if (!"/".equals(path) && !STOP_PATH.equals(path)) {
+                http.getRequestBody().close();
+                sendMessage(http, NOT_FOUND, String.format("Unknown path %s.\n", path));
+                return;
+            }
             String method = http.getRequestMethod();
             try(BufferedReader reader = toReader(http.getRequestBody())) {
                 StringBuilder sb = new StringBuilder();
@@ -103,27 +243,100 @@ public class StopServer implements Runnable, AutoCloseable {
                     latch.countDown();
                     sendMessage(http, OK, "Server is going to shutdown.\n");
                     internal.countDown();
-                // receive POST bad invalid stopCommand send BAD_REQUEST
+                // receive POST with invalid stopCommand send FORBIDDEN, as other control plane endpoints do
                 } else if (validMethod) {
-                    sendMessage(http, BAD_REQUEST, "Stop command is different.\n");
+                    sendMessage(http, FORBIDDEN, "Stop command is different.\n");
                 // receive another method send METHOD_NOT_ALLOWED
                 } else {
                     sendMessage(http, METHOD_NOT_ALLOWED, "Method is different.\n");
                 }
             }
         }
+    }
 
-        private BufferedReader toReader(InputStream st) {
-            return new BufferedReader(new InputStreamReader(st));
+    /**
+     * answers settings of running payara-micro, so that a build can decide to reuse it.
+     */
+    private class SettingsHandler extends CommandHandler {
+
+        @Override
+        public void handle(HttpExchange http) throws IOException {
+            http.getRequestBody().close();
+            if ("GET".equalsIgnoreCase(http.getRequestMethod())) {
+                sendMessage(http, OK, settings + "\n");
+            } else {
+                sendMessage(http, METHOD_NOT_ALLOWED, "Method is different.\n");
+            }
         }
+    }
 
-        private void sendMessage(HttpExchange http, int status, String msg) throws IOException {
-            byte[] bytes = msg.getBytes(UTF8);
-            http.getResponseHeaders().add(CONTENT_TYPE, TEXT_PLAIN);
-            http.sendResponseHeaders(status, bytes.length);
-            try(OutputStream body = http.getResponseBody()) {
-                body.write(bytes);
-                body.flush();
+    /**
+     * answers lifecycle state, bound http port and deployed applications of running payara-micro.
+     */
+    private class StatusHandler extends CommandHandler {
+
+        @Override
+        public void handle(HttpExchange http) throws IOException {
+            StringBuilder sb = new StringBuilder("{\n");
+            sb.append("  \"settings\": ").append(Json.quote(settings)).append(",\n");
+            if (payaraServer != null) {
+                sb.append("  \"state\": ").append(Json.quote(payaraServer.getLifecycle().getState().name())).append(",\n");
+                sb.append("  \"httpPort\": ").append(payaraServer.getBoundHttpPort()).append(",\n");
+                sb.append("  \"applications\": ").append(Json.array(payaraServer.getDeployedApplications())).append('\n');
+            } else {
+                sb.append("  \"state\": null\n");
+            }
+            sb.append("}\n");
+            answerGet(http, sb.toString());
+        }
+    }
+
+    /**
+     * answers JVM metrics of running payara-micro.
+     */
+    private class MetricsHandler extends CommandHandler {
+
+        @Override
+        public void handle(HttpExchange http) throws IOException {
+            answerGet(http, RuntimeMetrics.toJson());
+        }
+    }
+
+    /**
+     * redeploys archives. request body consists of stop command at the first line,
+     * and absolute paths of archives at following lines.
+     */
+    private class RedeployHandler extends CommandHandler {
+
+        @Override
+        public void handle(HttpExchange http) throws IOException {
+            List<String> lines = readLines(http.getRequestBody());
+            if (!PayaraPlugin.STOP_METHOD.equalsIgnoreCase(http.getRequestMethod())) {
+                sendMessage(http, METHOD_NOT_ALLOWED, "Method is different.\n");
+                return;
+            }
+            if (lines.isEmpty() || !stopCommand.equals(lines.get(0))) {
+                sendMessage(http, FORBIDDEN, "Stop command is different.\n");
+                return;
+            }
+            if (payaraServer == null) {
+                sendMessage(http, SERVICE_UNAVAILABLE, "Redeploy is not supported by this server.\n");
+                return;
+            }
+            if (payaraServer.getLifecycle().getState() != LifecycleState.READY) {
+                sendMessage(http, SERVICE_UNAVAILABLE, String.format("Payara-micro is %s.\n", payaraServer.getLifecycle().getState()));
+                return;
+            }
+            List<File> archives = new ArrayList<>();
+            for (String path : lines.subList(1, lines.size())) {
+                archives.add(new File(path));
+            }
+            try {
+                Redeployment redeployment = payaraServer.redeploy(archives);
+                sendMessage(http, OK, redeployment.toLines());
+            } catch (Exception e) {
+                LOG.warn("Failed to redeploy archives {}.", archives, e);
+                sendMessage(http, SERVICE_UNAVAILABLE, String.format("Failed to redeploy: %s\n", e.getMessage()));
             }
         }
     }
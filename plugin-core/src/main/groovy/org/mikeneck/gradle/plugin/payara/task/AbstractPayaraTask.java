@@ -17,23 +17,67 @@ package org.mikeneck.gradle.plugin.payara.task;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.Task;
 import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.specs.Specs;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.mikeneck.gradle.plugin.payara.PayaraPlugin;
+import org.mikeneck.gradle.plugin.payara.fork.CdsArchive;
+import org.mikeneck.gradle.plugin.payara.fork.ForkedPayaraMicro;
+import org.mikeneck.gradle.plugin.payara.fork.LaunchSpec;
+import org.mikeneck.gradle.plugin.payara.log.AsyncLogHandler;
+import org.mikeneck.gradle.plugin.payara.log.LogTarget;
+import org.mikeneck.gradle.plugin.payara.log.Slf4jLogSink;
+import org.mikeneck.gradle.plugin.payara.micro.AllocatedPorts;
 import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
+import org.mikeneck.gradle.plugin.payara.micro.BootProfile;
+import org.mikeneck.gradle.plugin.payara.micro.BootProfileBaseline;
+import org.mikeneck.gradle.plugin.payara.micro.BootTimings;
+import org.mikeneck.gradle.plugin.payara.micro.PortRegistry;
+import org.mikeneck.gradle.plugin.payara.micro.PreparedInstance;
+import org.mikeneck.gradle.plugin.payara.micro.ResidentMemory;
+import org.mikeneck.gradle.plugin.payara.micro.ThreadPoolSizing;
+import org.mikeneck.gradle.plugin.payara.server.ControlClient;
+import org.mikeneck.gradle.plugin.payara.server.DirectoryWatcher;
+import org.mikeneck.gradle.plugin.payara.server.Lifecycle;
+import org.mikeneck.gradle.plugin.payara.server.LifecycleState;
 import org.mikeneck.gradle.plugin.payara.server.PayaraMicroServer;
+import org.mikeneck.gradle.plugin.payara.server.ReadinessProbe;
+import org.mikeneck.gradle.plugin.payara.server.Redeployer;
+import org.mikeneck.gradle.plugin.payara.server.Redeployment;
 import org.mikeneck.gradle.plugin.payara.server.StopServer;
 import org.slf4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class AbstractPayaraTask extends ConventionTask {
 
+    /**
+     * time to wait for running payara-micro with different settings to shutdown.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 60000L;
+
+    /**
+     * number of the slowest phases shown in boot timings summary.
+     */
+    private static final int BOOT_TIMINGS_SUMMARY = 3;
+
     private final CountDownLatch latch = new CountDownLatch(1);
 
     private Integer httpPort;
@@ -44,107 +88,702 @@ public abstract class AbstractPayaraTask extends ConventionTask {
 
     private Boolean daemon;
 
+    private Boolean persistent;
+
+    private File instanceRootCache;
+
+    private String readinessPath;
+
+    private Integer readyTimeout;
+
+    private Integer deploymentThreads;
+
+    private Map<String, Set<String>> deploymentDependencies = new LinkedHashMap<>();
+
+    private File deploymentDir;
+
+    private Long deploymentDirSettle = 1000L;
+
+    private File metricsFile;
+
+    private Integer metricsInterval = 0;
+
+    private Boolean asyncLog = false;
+
+    private String logTarget = "gradle";
+
+    private File logFile;
+
+    private Integer logBufferSize = 8192;
+
+    private String logOverflow = "drop";
+
+    private File bootTimingsReport;
+
+    private Integer minHttpThreads;
+
+    private Integer maxHttpThreads;
+
+    private Boolean autoHttpThreads;
+
+    private String workload;
+
+    private Integer drainTimeout;
+
+    private Boolean fork;
+
+    private List<String> jvmArgs = new ArrayList<>();
+
+    private File cdsCache;
+
+    private String profile;
+
+    private File profileBaseline;
+
+    private ThreadPoolSizing httpThreads;
+
+    private Boolean allocatePorts = false;
+
+    private Integer allocatePortRange = 100;
+
+    private File portRegistry;
+
+    private File portsFile;
+
+    private File preparedInstance;
+
+    private AllocatedPorts allocatedPorts;
+
+    private final AtomicBoolean portsReleased = new AtomicBoolean();
+
+    public AbstractPayaraTask() {
+        // ports file is published to following tasks, payara-micro should run even if it is unchanged
+        getOutputs().upToDateWhen(Specs.<Task>satisfyNone());
+    }
+
     @TaskAction
     public void runPayara() {
         Logger logger = getClassLogger();
         verifySetting();
         validateConfiguration();
-        // create payara micro server
-        logger.debug("Creating payara-micro server.");
-        Runnable payaraServer = createPayaraMicroServer(latch);
-        // create stop server
-        logger.debug("Creating StopServer.");
-        try (StopServer stopServer = createStopServer()) {
-            // acquire ExecutorService
-            ExecutorService executors = createExecutors();
-            // submit to run payara micro server in ExecutorService
-            // submit to run stop server in ExecutorService
-            getLogger().lifecycle("Starting payara-micro server.");
-            logger.debug("Starting payara-micro server.");
-            executors.submit(payaraServer);
-            logger.debug("Starting StopServer.");
-            executors.submit(stopServer);
-
-            // daemon is true -> finish task
-            // daemon is false -> wait for stop server & payara micro server to shutdown
-            while (latch.getCount() > 0) {
+        reservePorts();
+        final PayaraMicroServer payaraServer;
+        final StopServer stopServer;
+        final DirectoryWatcher watcher;
+        // reserved ports are released by the lifecycle listener once payara-micro runs, and here if the task fails before it
+        try {
+            httpThreads = ThreadPoolSizing.resolve(getMinHttpThreads(), getMaxHttpThreads(), getAutoHttpThreads(),
+                    ThreadPoolSizing.Workload.of(getWorkload()), Runtime.getRuntime().availableProcessors());
+            getLogger().lifecycle("HTTP thread pool: {}", httpThreads);
+            prepareArchives();
+            try {
+                AlternativePayaraMicro.verifyApplicationNames(deploymentArchives());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidUserDataException(e.getMessage(), e);
+            }
+            if (getPersistent() && redeployToRunningServer()) {
+                return;
+            }
+            if (getFork()) {
+                runForked();
+                return;
+            }
+            // create payara micro server
+            logger.debug("Creating payara-micro server.");
+            payaraServer = createPayaraMicroServer(latch);
+            payaraServer.setReadinessProbe(createReadinessProbe());
+            payaraServer.setDrainTimeout(TimeUnit.SECONDS.toMillis(getDrainTimeout()));
+            payaraServer.setMetrics(getMetricsFile(), metricsInterval);
+            // create stop server
+            logger.debug("Creating StopServer.");
+            try {
+                stopServer = createStopServer(payaraServer);
+            } catch (IOException e) {
+                logger.error("An error has occurred while starting StopServer", e);
+                throw new GradleException("Fail to start StopServer", e);
+            }
+            try {
+                watcher = createWatcher(payaraServer);
+            } catch (IOException e) {
+                closeQuietly(stopServer);
+                throw new GradleException("Fail to watch directories.", e);
+            }
+            // close companions as soon as payara micro server terminates, even if the task has finished in daemon mode
+            payaraServer.getLifecycle().addListener(new Lifecycle.Listener() {
+                @Override
+                public void onChange(LifecycleState state) {
+                    if (state.isTerminal()) {
+                        closeQuietly(watcher);
+                        closeQuietly(stopServer);
+                        releasePorts();
+                        if (payaraServer.getMetricsSummary() != null) {
+                            getLogger().lifecycle(payaraServer.getMetricsSummary());
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            releasePorts();
+            throw e;
+        }
+        // acquire ExecutorService
+        ExecutorService executors = createExecutors();
+        // submit to run payara micro server in ExecutorService
+        // submit to run stop server in ExecutorService
+        getLogger().lifecycle("Starting payara-micro server with profile {}.", getProfile());
+        logger.debug("Starting payara-micro server.");
+        long residentBefore = ResidentMemory.currentKb();
+        executors.submit(payaraServer);
+        logger.debug("Starting StopServer.");
+        executors.submit(stopServer);
+        if (watcher != null) {
+            logger.debug("Starting DirectoryWatcher.");
+            executors.submit(watcher);
+        }
+        // threads exit as soon as submitted ones finish, instead of waiting forever in gradle daemon
+        executors.shutdown();
+
+        // daemon is true -> finish task as soon as payara micro server is ready
+        // daemon is false -> wait for stop server & payara micro server to shutdown
+        Lifecycle lifecycle = payaraServer.getLifecycle();
+        try {
+            LifecycleState state = lifecycle.await(getReadyTimeout(), TimeUnit.SECONDS, LifecycleState.READY, LifecycleState.STOPPED);
+            verifyState(lifecycle, state);
+            if (state == LifecycleState.READY) {
+                getLogger().lifecycle("Payara-micro server is ready on port {}.", getHttpPort());
+                reportBootTimings(payaraServer.getBootTimings());
+                long residentAfter = ResidentMemory.currentKb();
+                compareProfile("in-process", payaraServer.getBootTimings().getWallClock(),
+                        residentBefore < 0L || residentAfter < 0L ? ResidentMemory.UNKNOWN : residentAfter - residentBefore);
+            }
+            if (!getDaemon()) {
+                verifyState(lifecycle, lifecycle.await(LifecycleState.STOPPED));
+            }
+        } catch (InterruptedException e) {
+            logger.debug("InterruptedException has occurred.", e);
+            latch.countDown();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * run payara-micro in a child JVM with {@link #jvmArgs}, which talks with this task through {@link StopServer} protocol.
+     */
+    private void runForked() {
+        Logger logger = getClassLogger();
+        File workDir = new File(getTemporaryDir(), "fork");
+        File rootDir = new File(workDir, "root");
+        seedInstanceRoot(rootDir);
+        LaunchSpec spec = new LaunchSpec()
+                .setHttpPort(getHttpPort())
+                .setStopPort(getStopPort())
+                .setStopCommand(getStopCommand())
+                .setSettings(describeSettings())
+                .setRootDir(rootDir)
+                .setInstanceRootCache(getInstanceRootCache())
+                .setNoCluster(false)
+                .setReadinessPath(getReadinessPath())
+                .setReadyTimeout(getReadyTimeout())
+                .setDeploymentThreads(getDeploymentThreads())
+                .setDeploymentDependencies(deploymentDependencies)
+                .setHttpThreads(httpThreads.getMin(), httpThreads.getMax())
+                .setDrainTimeout(getDrainTimeout())
+                .setBootTimingsReport(getBootTimingsReport())
+                .setProfile(BootProfile.of(getProfile()))
+                .setDeploymentDir(deploymentDir)
+                .setDeploymentDirSettle(deploymentDirSettle)
+                .setMetrics(getMetricsFile(), metricsInterval)
+                .setAsyncLog(asyncLog, LogTarget.of(logTarget), getLogFile(), logBufferSize, AsyncLogHandler.Overflow.of(logOverflow));
+        for (File archive : deploymentArchives()) {
+            spec.addDeployment(archive);
+        }
+        if (allocatedPorts != null) {
+            spec.setSslPort(allocatedPorts.getSslPort())
+                    .setClusterStartPort(allocatedPorts.getClusterPort());
+        }
+        List<String> args = new ArrayList<>(jvmArgs);
+        CdsArchive cds = CdsArchive.find(getCdsCache(), deploymentArchives());
+        if (cds != null) {
+            args.addAll(cds.runtimeJvmArgs());
+        }
+        final ForkedPayaraMicro forked = new ForkedPayaraMicro(getName(), spec, args, workDir);
+        getLogger().lifecycle("Starting payara-micro in a forked JVM with {}.", args);
+        final DirectoryWatcher watcher;
+        try {
+            forked.start();
+            forked.awaitReady(getReadyTimeout(), TimeUnit.SECONDS);
+            watcher = createWatcher(new ControlClient(getStopPort(), getStopCommand()));
+        } catch (IOException e) {
+            forked.stop(SHUTDOWN_TIMEOUT);
+            releasePorts();
+            throw new GradleException("Fail to start payara-micro in a forked JVM.", e);
+        } catch (InterruptedException e) {
+            forked.stop(SHUTDOWN_TIMEOUT);
+            releasePorts();
+            Thread.currentThread().interrupt();
+            throw new GradleException("Starting payara-micro in a forked JVM is interrupted.", e);
+        }
+        getLogger().lifecycle("Payara-micro server is ready on port {}.", getHttpPort());
+        if (cds != null && cds.getBaselineMillis() >= 0L) {
+            getLogger().lifecycle("Started in {} ms with AppCDS archive, {} ms saved compared with the training run without it.",
+                    forked.getStartupMillis(), cds.getBaselineMillis() - forked.getStartupMillis());
+        }
+        compareProfile("fork", forked.getStartupMillis(), forked.getResidentKb());
+        // close watcher as soon as the forked JVM exits, even if the task has finished in daemon mode
+        Runnable monitor = new Runnable() {
+            @Override
+            public void run() {
                 try {
-                    Thread.sleep(300l);
+                    forked.waitFor();
                 } catch (InterruptedException e) {
-                    logger.debug("InterruptedException has occurred.", e);
+                    forked.stop(SHUTDOWN_TIMEOUT);
+                    Thread.currentThread().interrupt();
+                } finally {
+                    closeQuietly(watcher);
+                    releasePorts();
                 }
             }
+        };
+        if (watcher != null) {
+            logger.debug("Starting DirectoryWatcher.");
+            Thread thread = new Thread(watcher, "payara-fork-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (getDaemon()) {
+            Thread thread = new Thread(monitor, "payara-fork-monitor");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            monitor.run();
+        }
+    }
+
+    /**
+     * with {@link #allocatePorts}, reserve http, ssl, stop and cluster ports in {@link #portRegistry} searching from {@link #httpPort},
+     * {@link PayaraPlugin#DEFAULT_SSL_PORT}, {@link #stopPort} and {@link PayaraPlugin#DEFAULT_CLUSTER_PORT},
+     * then write them to {@link #portsFile}. Reserved http and stop ports replace {@link #httpPort} and {@link #stopPort}.
+     */
+    private void reservePorts() {
+        File portsFile = getPortsFile();
+        if (!allocatePorts) {
+            if (portsFile != null && portsFile.isFile() && !portsFile.delete()) {
+                getClassLogger().warn("Fail to delete ports file {}.", portsFile);
+            }
+            return;
+        }
+        Map<String, Integer> bases = new LinkedHashMap<>();
+        bases.put(AllocatedPorts.HTTP, getHttpPort());
+        bases.put(AllocatedPorts.SSL, PayaraPlugin.DEFAULT_SSL_PORT);
+        bases.put(AllocatedPorts.STOP, getStopPort());
+        bases.put(AllocatedPorts.CLUSTER, PayaraPlugin.DEFAULT_CLUSTER_PORT);
+        String owner = getProject().getProjectDir().getAbsolutePath() + getPath();
+        try {
+            Map<String, Integer> ports = new PortRegistry(getPortRegistry()).reserve(owner, bases, allocatePortRange);
+            allocatedPorts = new AllocatedPorts(owner, getPortRegistry(), ports.get(AllocatedPorts.HTTP), ports.get(AllocatedPorts.SSL),
+                    ports.get(AllocatedPorts.STOP), ports.get(AllocatedPorts.CLUSTER));
+            allocatedPorts.store(portsFile);
+        } catch (IOException e) {
+            releasePorts();
+            throw new GradleException("Fail to allocate ports for payara-micro.", e);
+        }
+        setHttpPort(allocatedPorts.getHttpPort());
+        setStopPort(allocatedPorts.getStopPort());
+        getLogger().lifecycle("Allocated ports {}.", allocatedPorts);
+    }
+
+    /**
+     * release ports reserved by {@link #reservePorts()} and delete {@link #portsFile}, only once even if called on several failure paths.
+     */
+    private void releasePorts() {
+        if (allocatedPorts == null || !portsReleased.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            allocatedPorts.release();
+        } catch (IOException e) {
+            getClassLogger().warn("Fail to release ports {}.", allocatedPorts, e);
+        }
+        File portsFile = getPortsFile();
+        if (portsFile != null && portsFile.isFile() && !portsFile.delete()) {
+            getClassLogger().warn("Fail to delete ports file {}.", portsFile);
+        }
+    }
+
+    private void reportBootTimings(BootTimings timings) {
+        getLogger().lifecycle("Boot timings: {}", timings.summary(BOOT_TIMINGS_SUMMARY));
+        if (getBootTimingsReport() == null) {
+            return;
+        }
+        try {
+            timings.writeJson(getBootTimingsReport());
+        } catch (IOException e) {
+            getClassLogger().warn("Fail to write boot timings to {}.", getBootTimingsReport(), e);
+        }
+    }
+
+    /**
+     * log boot time and resident memory compared with the last run of default profile.
+     * @param mode {@code in-process} or {@code fork}, which are compared separately.
+     * @param bootMillis milliseconds taken to boot.
+     * @param residentKb resident memory of payara-micro in kilobytes, or {@link ResidentMemory#UNKNOWN}.
+     */
+    private void compareProfile(String mode, long bootMillis, long residentKb) {
+        if (getProfileBaseline() == null) {
+            return;
+        }
+        try {
+            String comparison = new BootProfileBaseline(getProfileBaseline(), mode).record(BootProfile.of(getProfile()), bootMillis, residentKb);
+            if (comparison != null) {
+                getLogger().lifecycle(comparison);
+            }
+        } catch (IOException e) {
+            getClassLogger().warn("Fail to record boot time of profile {} to {}.", getProfile(), getProfileBaseline(), e);
+        }
+    }
+
+    private void verifyState(Lifecycle lifecycle, LifecycleState state) {
+        if (state == LifecycleState.FAILED) {
+            throw new GradleException("Payara-micro server has failed.", lifecycle.getFailure());
+        }
+        if (state != LifecycleState.READY && state != LifecycleState.STOPPED) {
+            latch.countDown();
+            throw new GradleException(String.format("Payara-micro server is not ready within %d seconds(state: %s).", getReadyTimeout(), state));
+        }
+    }
+
+    private ReadinessProbe createReadinessProbe() {
+        if (getReadinessPath() == null || getReadinessPath().isEmpty()) {
+            return null;
+        }
+        return new ReadinessProbe(getReadinessPath(), TimeUnit.SECONDS.toMillis(getReadyTimeout()));
+    }
+
+    private void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
         } catch (Exception e) {
-            logger.error("An error has occurred while starting StopServer", e);
-            throw new GradleException("Fail to start StopServer", e);
+            getClassLogger().debug("An error has occurred while closing {}.", closeable, e);
+        }
+    }
+
+    /**
+     * find payara-micro which is running on {@link #stopPort} via {@link StopServer},
+     * and redeploy archives to it if it runs with the same settings as this task.
+     * If settings are different, running payara-micro will be stopped.
+     * @return {@code true} if archives are redeployed to running payara-micro.
+     */
+    private boolean redeployToRunningServer() {
+        Logger logger = getClassLogger();
+        ControlClient client = new ControlClient(getStopPort(), getStopCommand());
+        try {
+            String running = client.settings();
+            if (running == null) {
+                logger.debug("No payara-micro is running on stopPort[{}].", getStopPort());
+                return false;
+            }
+            String settings = describeSettings();
+            if (running.equals(settings)) {
+                Redeployment redeployment = client.redeploy(deploymentArchives());
+                getLogger().lifecycle("Redeployed {} to running payara-micro.", redeployment.getRedeployed());
+                if (!redeployment.getUnchanged().isEmpty()) {
+                    getLogger().lifecycle("Skipped {}, whose archives are unchanged.", redeployment.getUnchanged());
+                }
+                return true;
+            }
+            getLogger().lifecycle("Running payara-micro has different settings[{}], restarting with [{}].", running, settings);
+            client.stop();
+        } catch (IOException e) {
+            logger.info("An exception occurred.", e);
+            throw new GradleException("An error occurred while connecting to running payara-micro.", e);
+        }
+        // running payara-micro drains in-flight requests before shutdown, as payaraStop waits for
+        if (!client.awaitShutdown(getHttpPort(), TimeUnit.SECONDS.toMillis(getDrainTimeout()) + SHUTDOWN_TIMEOUT)) {
+            throw new GradleException("Running payara-micro with different settings did not shutdown.");
         }
+        return false;
+    }
+
+    /**
+     * describes settings which should be the same between running payara-micro and this task,
+     * in order to redeploy archives without restarting payara-micro.
+     * @return a description of settings.
+     */
+    protected String describeSettings() {
+        return String.format("httpPort=%d,stopPort=%d,httpThreads=%d-%d,profile=%s", getHttpPort(), getStopPort(), httpThreads.getMin(), httpThreads.getMax(), getProfile());
     }
 
     /**
      * check spec
      * <ul>
-     *     <li>All the value is not null.</li>
+     *     <li>All the value except {@link #readinessPath} is not null.</li>
      *     <li>{@link #httpPort} is not the same value as {@link #stopPort}.</li>
      *     <li>{@link #httpPort} is in the range between {@link org.mikeneck.gradle.plugin.payara.PayaraPlugin#MIN_PORT_NUMBER} abd {@link org.mikeneck.gradle.plugin.payara.PayaraPlugin#MAX_PORT_NUMBER}</li>
      *     <li>{@link #stopPort} is in the range between {@link org.mikeneck.gradle.plugin.payara.PayaraPlugin#MIN_PORT_NUMBER} abd {@link org.mikeneck.gradle.plugin.payara.PayaraPlugin#MAX_PORT_NUMBER}</li>
      *     <li>{@link #stopCommand} is not empty string.</li>
+     *     <li>{@link #readyTimeout} is positive.</li>
+     *     <li>{@link #deploymentThreads} is positive.</li>
+     *     <li>{@link #minHttpThreads} and {@link #maxHttpThreads} are zero(payara-micro default) or positive, and min is not greater than max.</li>
+     *     <li>{@link #workload} is {@code cpu-bound} or {@code blocking-io}.</li>
+     *     <li>{@link #drainTimeout} is zero or positive.</li>
+     *     <li>{@link #profile} is {@code default} or {@code fast}.</li>
+     *     <li>{@link #deploymentDir} is a directory, which is created if missing.</li>
+     *     <li>{@link #metricsInterval} is zero or positive.</li>
+     *     <li>with {@link #allocatePorts}, {@link #allocatePortRange} is positive and {@link #portRegistry} and {@link #portsFile} are given.</li>
+     *     <li>{@link #logOverflow} and {@link #logTarget} are known values. with {@link #asyncLog}, {@link #logBufferSize} is positive
+     *     and {@link #logFile} is given for file target.</li>
      * </ul>
      */
     private void verifySetting() {
         Logger logger = getClassLogger();
-        logger.debug("httpPort -> {}", httpPort);
-        logger.debug("stopPort -> {}", stopPort);
-        logger.debug("stopCommand -> {}", stopCommand);
-        logger.debug("daemon -> {}", daemon);
-        if (httpPort == null || stopPort == null || stopCommand == null || daemon == null) {
-            throw new InvalidUserDataException("There are null values in httpPort/stopPort/stopCommand/daemon.");
-        }
-        if (stopCommand.isEmpty()) {
+        logger.debug("httpPort -> {}", getHttpPort());
+        logger.debug("stopPort -> {}", getStopPort());
+        logger.debug("stopCommand -> {}", getStopCommand());
+        logger.debug("daemon -> {}", getDaemon());
+        logger.debug("persistent -> {}", getPersistent());
+        logger.debug("readinessPath -> {}", getReadinessPath());
+        logger.debug("readyTimeout -> {}", getReadyTimeout());
+        logger.debug("deploymentThreads -> {}", getDeploymentThreads());
+        logger.debug("deploymentDependencies -> {}", deploymentDependencies);
+        logger.debug("minHttpThreads -> {}", getMinHttpThreads());
+        logger.debug("maxHttpThreads -> {}", getMaxHttpThreads());
+        logger.debug("autoHttpThreads -> {}", getAutoHttpThreads());
+        logger.debug("workload -> {}", getWorkload());
+        logger.debug("drainTimeout -> {}", getDrainTimeout());
+        logger.debug("fork -> {}", getFork());
+        logger.debug("jvmArgs -> {}", jvmArgs);
+        logger.debug("profile -> {}", getProfile());
+        logger.debug("deploymentDir -> {}", deploymentDir);
+        logger.debug("deploymentDirSettle -> {}", deploymentDirSettle);
+        logger.debug("metricsFile -> {}", getMetricsFile());
+        logger.debug("metricsInterval -> {}", metricsInterval);
+        logger.debug("asyncLog -> {}", asyncLog);
+        logger.debug("logTarget -> {}", logTarget);
+        logger.debug("logFile -> {}", getLogFile());
+        logger.debug("logBufferSize -> {}", logBufferSize);
+        logger.debug("logOverflow -> {}", logOverflow);
+        logger.debug("allocatePorts -> {}", allocatePorts);
+        logger.debug("allocatePortRange -> {}", allocatePortRange);
+        if (getHttpPort() == null || getStopPort() == null || getStopCommand() == null || getDaemon() == null || getPersistent() == null || getReadyTimeout() == null) {
+            throw new InvalidUserDataException("There are null values in httpPort/stopPort/stopCommand/daemon/persistent/readyTimeout.");
+        }
+        if (getReadyTimeout() <= 0) {
+            throw new InvalidUserDataException("readyTimeout should be positive value.");
+        }
+        if (getFork() == null || jvmArgs == null) {
+            throw new InvalidUserDataException("There are null values in fork/jvmArgs.");
+        }
+        if (getProfile() == null || BootProfile.of(getProfile()) == null) {
+            throw new InvalidUserDataException(String.format("Unknown profile[%s]. Available values are default and fast.", getProfile()));
+        }
+        if (getDrainTimeout() == null || getDrainTimeout() < 0) {
+            throw new InvalidUserDataException("drainTimeout should be zero or positive value.");
+        }
+        if (getDeploymentThreads() == null || getDeploymentThreads() <= 0) {
+            throw new InvalidUserDataException("deploymentThreads should be positive value.");
+        }
+        verifyDeploymentDir();
+        if (metricsInterval == null || metricsInterval < 0) {
+            throw new InvalidUserDataException("metricsInterval should be zero(disabled) or positive value.");
+        }
+        verifyAsyncLog();
+        verifyAllocatePorts();
+        if (getStopCommand().isEmpty()) {
             throw new InvalidUserDataException("stopCommand should be non empty value.");
         }
-        portIsInRange("httpPort", httpPort);
-        portIsInRange("stopPort", stopPort);
-        if (httpPort.equals(stopPort)) {
+        verifyHttpThreads();
+        portIsInRange("httpPort", getHttpPort());
+        portIsInRange("stopPort", getStopPort());
+        if (getHttpPort().equals(getStopPort())) {
             throw new InvalidUserDataException("httpPort and stopPort should have different value.");
         }
     }
 
+    private void verifyAllocatePorts() {
+        if (allocatePorts == null || allocatePortRange == null) {
+            throw new InvalidUserDataException("There are null values in allocatePorts/allocatePortRange.");
+        }
+        if (!allocatePorts) {
+            return;
+        }
+        if (allocatePortRange <= 0) {
+            throw new InvalidUserDataException("allocatePortRange should be positive value.");
+        }
+        if (getPortRegistry() == null || getPortsFile() == null) {
+            throw new InvalidUserDataException("portRegistry and portsFile are required to allocate ports.");
+        }
+    }
+
+    private void verifyAsyncLog() {
+        if (asyncLog == null || logBufferSize == null) {
+            throw new InvalidUserDataException("There are null values in asyncLog/logBufferSize.");
+        }
+        if (AsyncLogHandler.Overflow.of(logOverflow) == null) {
+            throw new InvalidUserDataException(String.format("Unknown logOverflow[%s]. Available values are drop and sample.", logOverflow));
+        }
+        LogTarget target = LogTarget.of(logTarget);
+        if (target == null) {
+            throw new InvalidUserDataException(String.format("Unknown logTarget[%s]. Available values are gradle, file and both.", logTarget));
+        }
+        if (!asyncLog) {
+            return;
+        }
+        if (logBufferSize <= 0) {
+            throw new InvalidUserDataException("logBufferSize should be positive value.");
+        }
+        if (target != LogTarget.GRADLE && getLogFile() == null) {
+            throw new InvalidUserDataException(String.format("logFile is required for logTarget %s.", target));
+        }
+    }
+
+    private void verifyDeploymentDir() {
+        if (deploymentDirSettle == null || deploymentDirSettle < 0) {
+            throw new InvalidUserDataException("deploymentDirSettle should be zero or positive value.");
+        }
+        if (deploymentDir == null) {
+            return;
+        }
+        if (!deploymentDir.isDirectory() && !deploymentDir.mkdirs()) {
+            throw new InvalidUserDataException(String.format("deploymentDir %s is not a directory.", deploymentDir));
+        }
+    }
+
+    private void verifyHttpThreads() {
+        if (getMinHttpThreads() == null || getMaxHttpThreads() == null || getAutoHttpThreads() == null || getWorkload() == null) {
+            throw new InvalidUserDataException("There are null values in minHttpThreads/maxHttpThreads/autoHttpThreads/workload.");
+        }
+        if (getMinHttpThreads() < 0 || getMaxHttpThreads() < 0) {
+            throw new InvalidUserDataException("minHttpThreads and maxHttpThreads should be zero(payara-micro default) or positive value.");
+        }
+        if (getMinHttpThreads() > 0 && getMaxHttpThreads() > 0 && getMinHttpThreads() > getMaxHttpThreads()) {
+            throw new InvalidUserDataException("minHttpThreads should not be greater than maxHttpThreads.");
+        }
+        if (ThreadPoolSizing.Workload.of(getWorkload()) == null) {
+            throw new InvalidUserDataException(String.format("Unknown workload[%s]. Available values are cpu-bound and blocking-io.", getWorkload()));
+        }
+    }
+
     private static void portIsInRange(String name, Integer port) {
         if (port < PayaraPlugin.MIN_PORT_NUMBER || PayaraPlugin.MAX_PORT_NUMBER < port) {
             throw new InvalidUserDataException(String.format("%s is not in the range between %d and %d.", name, PayaraPlugin.MIN_PORT_NUMBER, PayaraPlugin.MAX_PORT_NUMBER));
         }
     }
 
+    /**
+     * seed instance root with {@link #preparedInstance}, so that payara-micro doesn't install files on boot.
+     * files seeded from an outdated preparation, or from one for a profile with another domain, are removed.
+     * @param rootDir instance root of payara-micro.
+     */
+    private void seedInstanceRoot(File rootDir) {
+        BootProfile profile = BootProfile.of(getProfile());
+        File preparedDir = getPreparedInstance();
+        try {
+            PreparedInstance prepared = preparedDir == null ? null : PreparedInstance.load(preparedDir);
+            if (prepared != null && prepared.isNoCluster() != profile.isNoCluster()) {
+                getClassLogger().info("{} is prepared for another domain, files are installed on boot for profile {}.", prepared, profile);
+                prepared = null;
+            }
+            if (prepared == null) {
+                if (PreparedInstance.unseed(rootDir)) {
+                    getClassLogger().info("Seeded files are removed from instance root {}.", rootDir);
+                }
+                return;
+            }
+            if (prepared.seed(rootDir)) {
+                getClassLogger().info("Instance root is seeded with {}.", prepared);
+            }
+        } catch (IOException e) {
+            getClassLogger().warn("Fail to seed instance root with {}.", preparedDir, e);
+        }
+    }
+
     protected abstract Logger getClassLogger();
 
     protected abstract void validateConfiguration();
 
     protected PayaraMicroServer createPayaraMicroServer(CountDownLatch latch) {
         final File rootDir = getTemporaryDir();
+        seedInstanceRoot(rootDir);
         return new PayaraMicroServer(latch) {
             @Override
             protected AlternativePayaraMicro createPayaraMicro() {
                 AlternativePayaraMicro payaraMicro = AlternativePayaraMicro.getInstance()
                         .setRootDir(rootDir)
-                        .setHttpPort(httpPort);
+                        .setInstanceRootCache(getInstanceRootCache())
+                        .setHttpPort(getHttpPort())
+                        .setDeploymentThreads(getDeploymentThreads())
+                        .setDeploymentDependencies(deploymentDependencies);
+                for (File archive : deploymentArchives()) {
+                    payaraMicro.addDeploymentFile(archive);
+                }
+                if (deploymentDir != null) {
+                    payaraMicro.setDeploymentDir(deploymentDir)
+                            .setWatchDeploymentDir(true)
+                            .setDeploymentDirSettle(deploymentDirSettle);
+                }
+                if (asyncLog) {
+                    payaraMicro.setLogHandler(createLogHandler());
+                }
+                if (allocatedPorts != null) {
+                    payaraMicro.setSslPort(allocatedPorts.getSslPort())
+                            .setClusterStartPort(allocatedPorts.getClusterPort());
+                }
+                httpThreads.applyTo(payaraMicro);
+                BootProfile.of(getProfile()).applyTo(payaraMicro);
                 mutateServer(payaraMicro);
                 return payaraMicro;
             }
         };
     }
 
-    protected abstract void mutateServer(AlternativePayaraMicro payaraMicro);
+    private AsyncLogHandler createLogHandler() {
+        try {
+            return LogTarget.of(logTarget).createHandler(logBufferSize, AsyncLogHandler.Overflow.of(logOverflow), new Slf4jLogSink(), getLogFile());
+        } catch (IOException e) {
+            throw new GradleException(String.format("Fail to open log file %s.", getLogFile()), e);
+        }
+    }
+
+    /**
+     * prepare archives before they are deployed.
+     */
+    protected void prepareArchives() {
+    }
+
+    /**
+     * @return archives to be deployed to payara-micro.
+     */
+    protected abstract List<File> deploymentArchives();
+
+    /**
+     * configure payara-micro other than deployments. This hook is not called when payara-micro runs in a forked JVM.
+     * @param payaraMicro payara-micro to be configured.
+     */
+    protected void mutateServer(AlternativePayaraMicro payaraMicro) {
+    }
 
-    protected StopServer createStopServer() throws IOException {
-        return new StopServer(stopPort, stopCommand, latch);
+    protected StopServer createStopServer(PayaraMicroServer payaraServer) throws IOException {
+        return new StopServer(getStopPort(), getStopCommand(), latch, describeSettings(), payaraServer);
+    }
+
+    /**
+     * @param redeployer payara-micro to which changes are redeployed, in this JVM or in a forked JVM.
+     * @return a watcher which runs along with payara-micro, or {@code null} if nothing is watched.
+     * @throws IOException when fails to watch directories.
+     */
+    protected DirectoryWatcher createWatcher(Redeployer redeployer) throws IOException {
+        return null;
     }
 
     private ExecutorService createExecutors() {
-        return Executors.newFixedThreadPool(2, new ThreadFactory() {
+        return Executors.newFixedThreadPool(3, new ThreadFactory() {
             @Override
             public Thread newThread(Runnable r) {
                 Thread thread = new Thread(r);
-                thread.setDaemon(daemon);
+                thread.setDaemon(getDaemon());
                 return thread;
             }
         });
@@ -181,4 +820,350 @@ public abstract class AbstractPayaraTask extends ConventionTask {
     public void setDaemon(Boolean daemon) {
         this.daemon = daemon;
     }
+
+    public Boolean getPersistent() {
+        return persistent;
+    }
+
+    public void setPersistent(Boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public File getInstanceRootCache() {
+        return instanceRootCache;
+    }
+
+    public void setInstanceRootCache(File instanceRootCache) {
+        this.instanceRootCache = instanceRootCache;
+    }
+
+    public String getReadinessPath() {
+        return readinessPath;
+    }
+
+    public void setReadinessPath(String readinessPath) {
+        this.readinessPath = readinessPath;
+    }
+
+    public Integer getReadyTimeout() {
+        return readyTimeout;
+    }
+
+    public void setReadyTimeout(Integer readyTimeout) {
+        this.readyTimeout = readyTimeout;
+    }
+
+    public Integer getDeploymentThreads() {
+        return deploymentThreads;
+    }
+
+    public void setDeploymentThreads(Integer deploymentThreads) {
+        this.deploymentThreads = deploymentThreads;
+    }
+
+    public Map<String, Set<String>> getDeploymentDependencies() {
+        return deploymentDependencies;
+    }
+
+    public void setDeploymentDependencies(Map<String, Set<String>> deploymentDependencies) {
+        this.deploymentDependencies = deploymentDependencies;
+    }
+
+    public File getDeploymentDir() {
+        return deploymentDir;
+    }
+
+    /**
+     * @param deploymentDir directory whose archives are deployed at boot, and deployed, redeployed or undeployed
+     *                      while payara-micro runs as they are added, changed or deleted. {@code null} disables it.
+     */
+    public void setDeploymentDir(File deploymentDir) {
+        this.deploymentDir = deploymentDir;
+    }
+
+    public Long getDeploymentDirSettle() {
+        return deploymentDirSettle;
+    }
+
+    /**
+     * @param deploymentDirSettle milliseconds in which size and last modified time of an archive in {@link #deploymentDir} should not change before it is deployed.
+     */
+    public void setDeploymentDirSettle(Long deploymentDirSettle) {
+        this.deploymentDirSettle = deploymentDirSettle;
+    }
+
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * @param metricsFile CSV file into which JVM and request metrics are sampled while payara-micro runs, {@code null} disables sampling.
+     */
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public Integer getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * @param metricsInterval milliseconds between samples of metrics, {@code 0} disables sampling.
+     */
+    public void setMetricsInterval(Integer metricsInterval) {
+        this.metricsInterval = metricsInterval;
+    }
+
+    public Boolean getAsyncLog() {
+        return asyncLog;
+    }
+
+    /**
+     * @param asyncLog if {@code true}, payara-micro's log is forwarded through a bounded buffer by another thread,
+     *                 so that logging never blocks request threads.
+     */
+    public void setAsyncLog(Boolean asyncLog) {
+        this.asyncLog = asyncLog;
+    }
+
+    public String getLogTarget() {
+        return logTarget;
+    }
+
+    /**
+     * @param logTarget {@code gradle}, {@code file} or {@code both}, where payara-micro's log is forwarded in async log mode.
+     */
+    public void setLogTarget(String logTarget) {
+        this.logTarget = logTarget;
+    }
+
+    public File getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * @param logFile rolling log file, used when {@link #logTarget} is {@code file} or {@code both}.
+     */
+    public void setLogFile(File logFile) {
+        this.logFile = logFile;
+    }
+
+    public Integer getLogBufferSize() {
+        return logBufferSize;
+    }
+
+    /**
+     * @param logBufferSize number of log records buffered in async log mode.
+     */
+    public void setLogBufferSize(Integer logBufferSize) {
+        this.logBufferSize = logBufferSize;
+    }
+
+    public String getLogOverflow() {
+        return logOverflow;
+    }
+
+    /**
+     * @param logOverflow {@code drop} drops records when the buffer is full,
+     *                    {@code sample} also samples records below warning when the buffer is nearly full.
+     */
+    public void setLogOverflow(String logOverflow) {
+        this.logOverflow = logOverflow;
+    }
+
+    /**
+     * declare that an archive should be deployed after other archives.
+     * @param archive name of archive(file name without extension).
+     * @param dependsOn names of archives which should be deployed before.
+     */
+    public void deploymentDependency(String archive, String... dependsOn) {
+        Set<String> deps = deploymentDependencies.get(archive);
+        if (deps == null) {
+            deps = new LinkedHashSet<>();
+            deploymentDependencies.put(archive, deps);
+        }
+        deps.addAll(Arrays.asList(dependsOn));
+    }
+
+    public File getBootTimingsReport() {
+        return bootTimingsReport;
+    }
+
+    /**
+     * @param bootTimingsReport JSON file to which timings of boot phases are written, {@code null} disables it.
+     */
+    public void setBootTimingsReport(File bootTimingsReport) {
+        this.bootTimingsReport = bootTimingsReport;
+    }
+
+    public Integer getMinHttpThreads() {
+        return minHttpThreads;
+    }
+
+    /**
+     * @param minHttpThreads minimum size of http-thread-pool, {@code 0} leaves payara-micro's default.
+     */
+    public void setMinHttpThreads(Integer minHttpThreads) {
+        this.minHttpThreads = minHttpThreads;
+    }
+
+    public Integer getMaxHttpThreads() {
+        return maxHttpThreads;
+    }
+
+    /**
+     * @param maxHttpThreads maximum size of http-thread-pool, {@code 0} leaves payara-micro's default.
+     */
+    public void setMaxHttpThreads(Integer maxHttpThreads) {
+        this.maxHttpThreads = maxHttpThreads;
+    }
+
+    public Boolean getAutoHttpThreads() {
+        return autoHttpThreads;
+    }
+
+    /**
+     * @param autoHttpThreads if {@code true}, sizes not given explicitly are derived from available cores and {@link #workload}.
+     */
+    public void setAutoHttpThreads(Boolean autoHttpThreads) {
+        this.autoHttpThreads = autoHttpThreads;
+    }
+
+    public String getWorkload() {
+        return workload;
+    }
+
+    /**
+     * @param workload {@code cpu-bound} or {@code blocking-io}.
+     */
+    public void setWorkload(String workload) {
+        this.workload = workload;
+    }
+
+    public Integer getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * @param drainTimeout seconds to wait for in-flight requests to finish after stop command, {@code 0} shuts down immediately.
+     */
+    public void setDrainTimeout(Integer drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public Boolean getFork() {
+        return fork;
+    }
+
+    /**
+     * @param fork if {@code true}, run payara-micro in a child JVM instead of gradle's JVM.
+     */
+    public void setFork(Boolean fork) {
+        this.fork = fork;
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public void setJvmArgs(List<String> jvmArgs) {
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * @param args arguments for the forked JVM, such as heap size, GC and {@code -XX} flags.
+     */
+    public void jvmArgs(String... args) {
+        jvmArgs.addAll(Arrays.asList(args));
+    }
+
+    public File getCdsCache() {
+        return cdsCache;
+    }
+
+    /**
+     * @param cdsCache directory in which AppCDS archives created by {@link PayaraCreateCdsArchive} are looked up in fork mode, {@code null} disables it.
+     */
+    public void setCdsCache(File cdsCache) {
+        this.cdsCache = cdsCache;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * @param profile {@code default} or {@code fast}, which boots payara-micro without clustering and unused services.
+     */
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public File getProfileBaseline() {
+        return profileBaseline;
+    }
+
+    /**
+     * @param profileBaseline properties file in which boot time and resident memory of each profile are kept, {@code null} disables comparison.
+     */
+    public void setProfileBaseline(File profileBaseline) {
+        this.profileBaseline = profileBaseline;
+    }
+
+    public Boolean getAllocatePorts() {
+        return allocatePorts;
+    }
+
+    /**
+     * @param allocatePorts {@code true} to reserve free ports through {@link #portRegistry} instead of using {@link #httpPort} and {@link #stopPort} as they are.
+     */
+    public void setAllocatePorts(Boolean allocatePorts) {
+        this.allocatePorts = allocatePorts;
+    }
+
+    public Integer getAllocatePortRange() {
+        return allocatePortRange;
+    }
+
+    /**
+     * @param allocatePortRange number of ports to try above each base port.
+     */
+    public void setAllocatePortRange(Integer allocatePortRange) {
+        this.allocatePortRange = allocatePortRange;
+    }
+
+    public File getPortRegistry() {
+        return portRegistry;
+    }
+
+    /**
+     * @param portRegistry file shared by builds on this host, in which reserved ports are kept.
+     */
+    public void setPortRegistry(File portRegistry) {
+        this.portRegistry = portRegistry;
+    }
+
+    @OutputFile
+    @Optional
+    public File getPortsFile() {
+        return portsFile;
+    }
+
+    /**
+     * @param portsFile properties file to which allocated ports are written for following tasks.
+     */
+    public void setPortsFile(File portsFile) {
+        this.portsFile = portsFile;
+    }
+
+    public File getPreparedInstance() {
+        return preparedInstance;
+    }
+
+    /**
+     * @param preparedInstance instance root prepared by {@link PayaraPrepareInstance}, {@code null} installs files on boot.
+     */
+    public void setPreparedInstance(File preparedInstance) {
+        this.preparedInstance = preparedInstance;
+    }
 }
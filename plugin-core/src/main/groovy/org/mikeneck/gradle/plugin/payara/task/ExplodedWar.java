@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exploded web application directory, which is assembled from web app directory and classpath of war.
+ * Directories in classpath go to {@code WEB-INF/classes} and files go to {@code WEB-INF/lib}.
+ */
+class ExplodedWar {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExplodedWar.class);
+
+    private static final String CLASSES = "WEB-INF/classes";
+
+    private static final String LIB = "WEB-INF/lib";
+
+    private final Path destination;
+
+    private final File webAppDir;
+
+    private final Iterable<File> classpath;
+
+    ExplodedWar(File destination, File webAppDir, Iterable<File> classpath) {
+        this.destination = destination.toPath();
+        this.webAppDir = webAppDir;
+        this.classpath = classpath;
+    }
+
+    /**
+     * synchronize destination with sources, copying only changed files and removing stale files.
+     * @return {@code true} if any file in destination is changed.
+     * @throws IOException when fails to copy or delete files.
+     */
+    boolean sync() throws IOException {
+        Map<Path, Path> sources = collectSources();
+        Files.createDirectories(destination);
+        boolean changed = removeStaleFiles(sources);
+        for (Map.Entry<Path, Path> entry : sources.entrySet()) {
+            Path target = destination.resolve(entry.getKey());
+            Path source = entry.getValue();
+            if (isModified(source, target)) {
+                Files.createDirectories(target.getParent());
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                changed = true;
+            }
+        }
+        LOG.debug("Exploded war {} is synchronized, changed: {}.", destination, changed);
+        return changed;
+    }
+
+    /**
+     * @return directories whose changes should be reflected to exploded war.
+     */
+    List<File> sourceDirectories() {
+        List<File> dirs = new ArrayList<>();
+        if (webAppDir != null && webAppDir.isDirectory()) {
+            dirs.add(webAppDir);
+        }
+        for (File file : classpath) {
+            if (file.isDirectory()) {
+                dirs.add(file);
+            }
+        }
+        return Collections.unmodifiableList(dirs);
+    }
+
+    File getDestination() {
+        return destination.toFile();
+    }
+
+    private Map<Path, Path> collectSources() throws IOException {
+        Map<Path, Path> sources = new HashMap<>();
+        if (webAppDir != null && webAppDir.isDirectory()) {
+            collectTree(webAppDir.toPath(), destination.getFileSystem().getPath(""), sources);
+        }
+        for (File file : classpath) {
+            if (file.isDirectory()) {
+                collectTree(file.toPath(), destination.getFileSystem().getPath(CLASSES), sources);
+            } else if (file.isFile()) {
+                sources.put(destination.getFileSystem().getPath(LIB, file.getName()), file.toPath());
+            }
+        }
+        return sources;
+    }
+
+    private static void collectTree(final Path root, final Path prefix, final Map<Path, Path> sources) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                sources.put(prefix.resolve(root.relativize(file).toString()), file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean removeStaleFiles(final Map<Path, Path> sources) throws IOException {
+        if (!Files.isDirectory(destination)) {
+            return false;
+        }
+        final boolean[] removed = {false};
+        Files.walkFileTree(destination, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!sources.containsKey(destination.relativize(file))) {
+                    Files.delete(file);
+                    removed[0] = true;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return removed[0];
+    }
+
+    private static boolean isModified(Path source, Path target) throws IOException {
+        return !Files.exists(target) ||
+                Files.size(source) != Files.size(target) ||
+                !Files.getLastModifiedTime(source).equals(Files.getLastModifiedTime(target));
+    }
+}
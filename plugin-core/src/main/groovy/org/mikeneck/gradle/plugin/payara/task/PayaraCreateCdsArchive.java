@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.task;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.tasks.TaskAction;
+import org.mikeneck.gradle.plugin.payara.fork.CdsArchive;
+import org.mikeneck.gradle.plugin.payara.fork.ForkedPayaraMicro;
+import org.mikeneck.gradle.plugin.payara.fork.LaunchSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates an AppCDS archive by booting payara-micro with the war in a forked JVM(training run).
+ * <p>
+ * After the archive is stored, payara-micro is booted again with it, and the startup time saved is reported.
+ * Forked runs({@code fork = true}) use the archive automatically while payara version, JVM and libraries of the war are the same.
+ */
+public class PayaraCreateCdsArchive extends ConventionTask {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayaraCreateCdsArchive.class);
+
+    public static final String TASK_NAME = "payaraCreateCdsArchive";
+
+    public static final String DESCRIPTION = "Creates an AppCDS archive of payara-micro deploying the war to cut its startup time.";
+
+    /**
+     * time to wait for a training run to exit and write its archive.
+     */
+    private static final long EXIT_TIMEOUT = 120000L;
+
+    private Integer httpPort;
+
+    private Integer stopPort;
+
+    private String stopCommand;
+
+    private String readinessPath;
+
+    private Integer readyTimeout;
+
+    private File instanceRootCache;
+
+    private File cdsCache;
+
+    private File war;
+
+    private List<String> jvmArgs = new ArrayList<>();
+
+    @TaskAction
+    public void createArchive() {
+        verifySetting();
+        CdsArchive.Mode mode = CdsArchive.Mode.current();
+        if (mode == CdsArchive.Mode.UNSUPPORTED) {
+            throw new GradleException(String.format("AppCDS requires Java 10 or later, but gradle runs on Java %s.", System.getProperty("java.specification.version")));
+        }
+        List<File> deployments = Collections.singletonList(getWar().getAbsoluteFile());
+        try {
+            CdsArchive archive = CdsArchive.of(getCdsCache(), deployments);
+            File trainingDir = new File(getTemporaryDir(), "training");
+            getLogger().lifecycle("Training run to create AppCDS archive({}).", mode);
+            List<String> trainingArgs = new ArrayList<>(jvmArgs);
+            trainingArgs.addAll(archive.trainingJvmArgs(trainingDir));
+            long baseline = boot("training", trainingDir, trainingArgs, deployments);
+            archive.storeTrainingResult(trainingDir, baseline);
+            getLogger().lifecycle("AppCDS archive is created at {}.", archive);
+
+            List<String> runtimeArgs = new ArrayList<>(jvmArgs);
+            runtimeArgs.addAll(archive.runtimeJvmArgs());
+            long shared = boot("verification", new File(getTemporaryDir(), "verification"), runtimeArgs, deployments);
+            getLogger().lifecycle("Startup with AppCDS archive: {} ms, without it: {} ms({} ms saved).", shared, baseline, baseline - shared);
+        } catch (IOException e) {
+            throw new GradleException("Fail to create AppCDS archive.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Creating AppCDS archive is interrupted.", e);
+        }
+    }
+
+    /**
+     * boot payara-micro in a forked JVM until it is ready, then stop it.
+     * @return milliseconds from starting JVM to payara-micro being ready.
+     */
+    private long boot(String name, File workDir, List<String> args, List<File> deployments) throws IOException, InterruptedException {
+        LaunchSpec spec = new LaunchSpec()
+                .setHttpPort(getHttpPort())
+                .setStopPort(getStopPort())
+                .setStopCommand(getStopCommand())
+                .setSettings(name)
+                .setRootDir(new File(workDir, "root"))
+                .setInstanceRootCache(getInstanceRootCache())
+                .setNoCluster(false)
+                .setReadinessPath(getReadinessPath())
+                .setReadyTimeout(getReadyTimeout());
+        for (File deployment : deployments) {
+            spec.addDeployment(deployment);
+        }
+        LOG.debug("{} run with {}.", name, args);
+        ForkedPayaraMicro forked = new ForkedPayaraMicro(name, spec, args, workDir);
+        try {
+            forked.start();
+            forked.awaitReady(getReadyTimeout(), TimeUnit.SECONDS);
+            return forked.getStartupMillis();
+        } finally {
+            forked.stop(EXIT_TIMEOUT);
+        }
+    }
+
+    private void verifySetting() {
+        if (getHttpPort() == null || getStopPort() == null || getStopCommand() == null || getReadyTimeout() == null || getCdsCache() == null || jvmArgs == null) {
+            throw new InvalidUserDataException("There are null values in httpPort/stopPort/stopCommand/readyTimeout/cdsCache/jvmArgs.");
+        }
+        if (getWar() == null || !getWar().exists()) {
+            throw new InvalidUserDataException("Invalid configuration. Web archive file is not set.");
+        }
+    }
+
+    public Integer getHttpPort() {
+        return httpPort;
+    }
+
+    public void setHttpPort(Integer httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    public Integer getStopPort() {
+        return stopPort;
+    }
+
+    public void setStopPort(Integer stopPort) {
+        this.stopPort = stopPort;
+    }
+
+    public String getStopCommand() {
+        return stopCommand;
+    }
+
+    public void setStopCommand(String stopCommand) {
+        this.stopCommand = stopCommand;
+    }
+
+    public String getReadinessPath() {
+        return readinessPath;
+    }
+
+    public void setReadinessPath(String readinessPath) {
+        this.readinessPath = readinessPath;
+    }
+
+    public Integer getReadyTimeout() {
+        return readyTimeout;
+    }
+
+    public void setReadyTimeout(Integer readyTimeout) {
+        this.readyTimeout = readyTimeout;
+    }
+
+    public File getInstanceRootCache() {
+        return instanceRootCache;
+    }
+
+    public void setInstanceRootCache(File instanceRootCache) {
+        this.instanceRootCache = instanceRootCache;
+    }
+
+    public File getCdsCache() {
+        return cdsCache;
+    }
+
+    /**
+     * @param cdsCache directory in which AppCDS archives are stored.
+     */
+    public void setCdsCache(File cdsCache) {
+        this.cdsCache = cdsCache;
+    }
+
+    public File getWar() {
+        return war;
+    }
+
+    public void setWar(File war) {
+        this.war = war;
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public void setJvmArgs(List<String> jvmArgs) {
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * @param args arguments for forked JVMs, which should be the same as ones of runs using the archive.
+     */
+    public void jvmArgs(String... args) {
+        jvmArgs.addAll(Arrays.asList(args));
+    }
+}
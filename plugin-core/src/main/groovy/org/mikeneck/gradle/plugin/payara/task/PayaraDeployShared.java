@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.task;
+
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.tasks.TaskAction;
+import org.mikeneck.gradle.plugin.payara.PayaraPlugin;
+import org.mikeneck.gradle.plugin.payara.fork.LaunchSpec;
+import org.mikeneck.gradle.plugin.payara.micro.BootProfile;
+import org.mikeneck.gradle.plugin.payara.server.SharedPayaraServer;
+
+import java.io.File;
+
+/**
+ * Deploys the war to payara-micro shared by all projects of the build.
+ * <p>
+ * The first task to run starts the server with its own settings, and the server is stopped when the build finishes.
+ * Integration test tasks depending on this task can reach the application at {@code http://localhost:<port><contextRoot>}.
+ */
+public class PayaraDeployShared extends ConventionTask {
+
+    public static final String TASK_NAME = "payaraDeployShared";
+
+    public static final String DESCRIPTION = "Deploys the war to payara-micro shared in the build, which is stopped at the end of build.";
+
+    private Integer httpPort;
+
+    private Integer stopPort;
+
+    private String stopCommand;
+
+    private Integer readyTimeout;
+
+    private String profile;
+
+    private File rootDir;
+
+    private File instanceRootCache;
+
+    private File war;
+
+    private String contextRoot;
+
+    private int boundHttpPort = Integer.MIN_VALUE;
+
+    @TaskAction
+    public void deploy() {
+        verifySetting();
+        LaunchSpec spec = new LaunchSpec()
+                .setHttpPort(getHttpPort())
+                .setStopPort(getStopPort())
+                .setStopCommand(getStopCommand())
+                .setSettings(String.format("shared,httpPort=%d,stopPort=%d,profile=%s", getHttpPort(), getStopPort(), getProfile()))
+                .setRootDir(getRootDir())
+                .setInstanceRootCache(getInstanceRootCache())
+                .setReadyTimeout(getReadyTimeout())
+                .setProfile(BootProfile.of(getProfile()));
+        SharedPayaraServer server = SharedPayaraServer.of(getProject().getGradle());
+        boundHttpPort = server.start(spec, getReadyTimeout());
+        String name = server.deploy(getWar().getAbsoluteFile(), getContextRoot());
+        getLogger().lifecycle("Deployed {} as {} to shared payara-micro at http://localhost:{}{}.", getWar().getName(), name, boundHttpPort, getContextRoot());
+    }
+
+    private void verifySetting() {
+        if (getHttpPort() == null || getStopPort() == null || getStopCommand() == null || getReadyTimeout() == null || getProfile() == null || getRootDir() == null) {
+            throw new InvalidUserDataException("There are null values in httpPort/stopPort/stopCommand/readyTimeout/profile/rootDir.");
+        }
+        verifyPort("httpPort", getHttpPort());
+        verifyPort("stopPort", getStopPort());
+        if (getWar() == null || !getWar().exists()) {
+            throw new InvalidUserDataException("Invalid configuration. Web archive file is not set.");
+        }
+        if (getContextRoot() == null || !getContextRoot().startsWith("/")) {
+            throw new InvalidUserDataException(String.format("Invalid context root [%s]. It should start with '/'.", getContextRoot()));
+        }
+    }
+
+    private static void verifyPort(String name, int port) {
+        if (port < PayaraPlugin.MIN_PORT_NUMBER || PayaraPlugin.MAX_PORT_NUMBER < port) {
+            throw new InvalidUserDataException(String.format("%s is not in the range between %d and %d.", name, PayaraPlugin.MIN_PORT_NUMBER, PayaraPlugin.MAX_PORT_NUMBER));
+        }
+    }
+
+    public Integer getHttpPort() {
+        return httpPort;
+    }
+
+    public void setHttpPort(Integer httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    public Integer getStopPort() {
+        return stopPort;
+    }
+
+    public void setStopPort(Integer stopPort) {
+        this.stopPort = stopPort;
+    }
+
+    public String getStopCommand() {
+        return stopCommand;
+    }
+
+    public void setStopCommand(String stopCommand) {
+        this.stopCommand = stopCommand;
+    }
+
+    public Integer getReadyTimeout() {
+        return readyTimeout;
+    }
+
+    public void setReadyTimeout(Integer readyTimeout) {
+        this.readyTimeout = readyTimeout;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public File getRootDir() {
+        return rootDir;
+    }
+
+    /**
+     * @param rootDir instance root of the shared server, which is used only by the task starting it.
+     */
+    public void setRootDir(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    public File getInstanceRootCache() {
+        return instanceRootCache;
+    }
+
+    public void setInstanceRootCache(File instanceRootCache) {
+        this.instanceRootCache = instanceRootCache;
+    }
+
+    public File getWar() {
+        return war;
+    }
+
+    public void setWar(File war) {
+        this.war = war;
+    }
+
+    public String getContextRoot() {
+        return contextRoot;
+    }
+
+    public void setContextRoot(String contextRoot) {
+        this.contextRoot = contextRoot;
+    }
+
+    /**
+     * @return http port of the shared server, available after this task has run.
+     */
+    public int getBoundHttpPort() {
+        return boundHttpPort;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.task;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.tasks.TaskAction;
+import org.mikeneck.gradle.plugin.payara.load.LoadGenerator;
+import org.mikeneck.gradle.plugin.payara.load.LoadReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class PayaraLoadTest extends ConventionTask {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayaraLoadTest.class);
+
+    public static final String TASK_NAME = "payaraLoadTest";
+
+    public static final String DESCRIPTION = "Drives HTTP traffic to running payara-micro and reports throughput and latencies.";
+
+    private Integer httpPort;
+
+    private List<String> urls = new ArrayList<>(Arrays.asList("/"));
+
+    private Integer connections = 8;
+
+    private Integer duration = 10;
+
+    private Integer rate = 0;
+
+    private Boolean keepAlive = true;
+
+    private File reportFile;
+
+    @TaskAction
+    public void loadTest() {
+        verifySetting();
+        List<URL> targets = resolveUrls();
+        LOG.debug("urls -> {}", targets);
+        getLogger().lifecycle("Driving {} traffic to {} with {} connections for {} seconds.",
+                rate > 0 ? rate + " req/s" : "closed loop", targets, connections, duration);
+        LoadGenerator generator = new LoadGenerator(targets, connections, TimeUnit.SECONDS.toMillis(duration), rate, keepAlive);
+        LoadReport report;
+        try {
+            report = generator.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Load test is interrupted.", e);
+        }
+        getLogger().lifecycle(report.summary());
+        if (getReportFile() != null) {
+            try {
+                report.writeJson(getReportFile());
+            } catch (IOException e) {
+                throw new GradleException(String.format("Fail to write load test report to %s.", getReportFile()), e);
+            }
+        }
+    }
+
+    private void verifySetting() {
+        if (getHttpPort() == null || urls == null || connections == null || duration == null || rate == null || keepAlive == null) {
+            throw new InvalidUserDataException("There are null values in httpPort/urls/connections/duration/rate/keepAlive.");
+        }
+        if (urls.isEmpty()) {
+            throw new InvalidUserDataException("urls should have at least one url.");
+        }
+        if (connections <= 0 || duration <= 0) {
+            throw new InvalidUserDataException("connections and duration should be positive value.");
+        }
+        if (rate < 0) {
+            throw new InvalidUserDataException("rate should be zero(closed loop) or positive value(open loop).");
+        }
+    }
+
+    private List<URL> resolveUrls() {
+        List<URL> targets = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            String spec = url.startsWith("http://") || url.startsWith("https://") ? url :
+                    String.format("http://localhost:%d%s", getHttpPort(), url.startsWith("/") ? url : "/" + url);
+            try {
+                targets.add(new URL(spec));
+            } catch (MalformedURLException e) {
+                throw new InvalidUserDataException(String.format("Invalid url[%s].", url), e);
+            }
+        }
+        return targets;
+    }
+
+    public Integer getHttpPort() {
+        return httpPort;
+    }
+
+    public void setHttpPort(Integer httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    /**
+     * @param urls absolute urls or paths on {@link #httpPort} of localhost.
+     */
+    public void setUrls(List<String> urls) {
+        this.urls = urls;
+    }
+
+    public Integer getConnections() {
+        return connections;
+    }
+
+    public void setConnections(Integer connections) {
+        this.connections = connections;
+    }
+
+    public Integer getDuration() {
+        return duration;
+    }
+
+    /**
+     * @param duration seconds to drive traffic.
+     */
+    public void setDuration(Integer duration) {
+        this.duration = duration;
+    }
+
+    public Integer getRate() {
+        return rate;
+    }
+
+    /**
+     * @param rate requests per second(open loop), 0 sends requests as fast as responses come(closed loop).
+     */
+    public void setRate(Integer rate) {
+        this.rate = rate;
+    }
+
+    public Boolean getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public File getReportFile() {
+        return reportFile;
+    }
+
+    public void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.task;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.mikeneck.gradle.plugin.payara.micro.BootProfile;
+import org.mikeneck.gradle.plugin.payara.micro.InstanceRootInstaller;
+import org.mikeneck.gradle.plugin.payara.micro.PreparedInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Prepares an instance root of payara-micro({@code config} and {@code docroot} directories) ahead of run tasks.
+ * <p>
+ * The instance root depends only on payara version, domain.xml and profile, so this task is up-to-date while they are unchanged,
+ * and run tasks with a profile of the same domain seed their instance root with it instead of installing files on boot.
+ */
+public class PayaraPrepareInstance extends ConventionTask {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayaraPrepareInstance.class);
+
+    public static final String TASK_NAME = "payaraPrepareInstance";
+
+    public static final String DESCRIPTION = "Prepares instance root of payara-micro which run tasks boot from.";
+
+    private String payaraVersion;
+
+    private File domainXml;
+
+    private String profile;
+
+    private File instanceDir;
+
+    @TaskAction
+    public void prepare() {
+        verifySetting();
+        File dir = getInstanceDir();
+        getProject().delete(dir);
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new GradleException(String.format("Fail to create instance directory %s.", dir));
+        }
+        BootProfile profile = BootProfile.of(getProfile());
+        File domainXml = getDomainXml();
+        String configFileUri = domainXml == null ?
+                InstanceRootInstaller.embeddedDomainXml(profile.isNoCluster()) :
+                domainXml.getAbsoluteFile().toURI().toString();
+        try {
+            PreparedInstance prepared = PreparedInstance.prepare(dir, configFileUri, profile);
+            LOG.info("Instance root is prepared: {}.", prepared);
+        } catch (IOException e) {
+            throw new GradleException(String.format("Fail to prepare instance root in %s.", dir), e);
+        }
+    }
+
+    private void verifySetting() {
+        if (getInstanceDir() == null) {
+            throw new InvalidUserDataException("instanceDir is required.");
+        }
+        if (getProfile() == null || BootProfile.of(getProfile()) == null) {
+            throw new InvalidUserDataException(String.format("Unknown profile[%s]. Available values are default and fast.", getProfile()));
+        }
+        File domainXml = getDomainXml();
+        if (domainXml != null && !domainXml.isFile()) {
+            throw new InvalidUserDataException(String.format("domainXml %s is not a file.", domainXml));
+        }
+    }
+
+    @Input
+    public String getPayaraVersion() {
+        return payaraVersion;
+    }
+
+    /**
+     * @param payaraVersion version of payara-micro which installs files.
+     */
+    public void setPayaraVersion(String payaraVersion) {
+        this.payaraVersion = payaraVersion;
+    }
+
+    @InputFile
+    @Optional
+    public File getDomainXml() {
+        return domainXml;
+    }
+
+    /**
+     * @param domainXml domain.xml to be used instead of the one bundled in payara-micro.
+     */
+    public void setDomainXml(File domainXml) {
+        this.domainXml = domainXml;
+    }
+
+    @Input
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * @param profile profile for which the instance root is prepared, which chooses bundled domain.xml with or without cluster.
+     */
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    @OutputDirectory
+    public File getInstanceDir() {
+        return instanceDir;
+    }
+
+    /**
+     * @param instanceDir directory into which the instance root is prepared.
+     */
+    public void setInstanceDir(File instanceDir) {
+        this.instanceDir = instanceDir;
+    }
+}
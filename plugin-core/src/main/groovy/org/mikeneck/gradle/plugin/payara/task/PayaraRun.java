@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.task;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.FileCollection;
+import org.mikeneck.gradle.plugin.payara.server.DirectoryWatcher;
+import org.mikeneck.gradle.plugin.payara.server.Redeployer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class PayaraRun extends AbstractPayaraTask {
+
+    public static final String TASK_NAME = "payaraRun";
+
+    public static final String DESCRIPTION = "Deploys exploded JavaEE app to payara-micro and redeploys it on changes.";
+
+    /**
+     * default debounce window in milliseconds.
+     */
+    public static final long DEFAULT_DEBOUNCE = 500L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayaraRun.class);
+
+    private File webAppDir;
+
+    private FileCollection classpath;
+
+    private File explodedDir;
+
+    private Long debounce = DEFAULT_DEBOUNCE;
+
+    private ExplodedWar explodedWar;
+
+    @Override
+    protected Logger getClassLogger() {
+        return LOG;
+    }
+
+    @Override
+    protected void validateConfiguration() {
+        if (getClasspath() == null || getExplodedDir() == null) {
+            throw new InvalidUserDataException("Invalid configuration. classpath and explodedDir should be set.");
+        }
+        if (debounce == null || debounce < 0) {
+            throw new InvalidUserDataException("debounce should be zero or positive value.");
+        }
+    }
+
+    @Override
+    protected void prepareArchives() {
+        explodedWar = new ExplodedWar(getExplodedDir(), getWebAppDir(), getClasspath());
+        try {
+            explodedWar.sync();
+        } catch (IOException e) {
+            throw new GradleException("Fail to assemble exploded war.", e);
+        }
+    }
+
+    @Override
+    protected List<File> deploymentArchives() {
+        return Collections.singletonList(getExplodedDir().getAbsoluteFile());
+    }
+
+    @Override
+    protected DirectoryWatcher createWatcher(final Redeployer redeployer) throws IOException {
+        return new DirectoryWatcher(explodedWar.sourceDirectories(), debounce, new DirectoryWatcher.Listener() {
+            @Override
+            public void onChange(Set<Path> changes) throws Exception {
+                if (explodedWar.sync()) {
+                    getLogger().lifecycle("{} files changed, redeploying {}.", changes.size(), getExplodedDir().getName());
+                    redeployer.redeploy(deploymentArchives());
+                }
+            }
+        });
+    }
+
+    public File getWebAppDir() {
+        return webAppDir;
+    }
+
+    public void setWebAppDir(File webAppDir) {
+        this.webAppDir = webAppDir;
+    }
+
+    public FileCollection getClasspath() {
+        return classpath;
+    }
+
+    public void setClasspath(FileCollection classpath) {
+        this.classpath = classpath;
+    }
+
+    public File getExplodedDir() {
+        return explodedDir;
+    }
+
+    public void setExplodedDir(File explodedDir) {
+        this.explodedDir = explodedDir;
+    }
+
+    public Long getDebounce() {
+        return debounce;
+    }
+
+    public void setDebounce(Long debounce) {
+        this.debounce = debounce;
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2015 Shinya Mochida
+ * 
+ * Licensed under the Apache License,Version2.0(the"License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,software
+ * Distributed under the License is distributed on an"AS IS"BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mikeneck.gradle.plugin.payara.task;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.tasks.TaskAction;
+import org.mikeneck.gradle.plugin.payara.PayaraPlugin;
+import org.mikeneck.gradle.plugin.payara.fleet.FleetProxy;
+import org.mikeneck.gradle.plugin.payara.fleet.PayaraFleet;
+import org.mikeneck.gradle.plugin.payara.fork.CdsArchive;
+import org.mikeneck.gradle.plugin.payara.fork.ForkedPayaraMicro;
+import org.mikeneck.gradle.plugin.payara.fork.LaunchSpec;
+import org.mikeneck.gradle.plugin.payara.micro.ThreadPoolSizing;
+import org.mikeneck.gradle.plugin.payara.server.StopServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs several payara-micro instances in child JVMs, which form a cluster, behind a proxy serving {@link #httpPort}.
+ * <p>
+ * Instance {@code i}(0 origin) binds http port automatically from {@code httpPort + 1 + i * autoBindRange},
+ * and its StopServer listens on {@code stopPort + 1 + i}. The stop command sent to {@link #stopPort} stops all instances.
+ */
+public class PayaraRunFleet extends ConventionTask {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PayaraRunFleet.class);
+
+    public static final String TASK_NAME = "payaraRunFleet";
+
+    public static final String DESCRIPTION = "Runs a fleet of payara-micro instances deploying the war behind a local load balancer.";
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private Integer httpPort;
+
+    private Integer stopPort;
+
+    private String stopCommand;
+
+    private Boolean daemon;
+
+    private String readinessPath;
+
+    private Integer readyTimeout;
+
+    private Integer deploymentThreads;
+
+    private File instanceRootCache;
+
+    private File war;
+
+    private Integer instances = 2;
+
+    private String balancing = FleetProxy.Balancing.ROUND_ROBIN.getId();
+
+    private Integer autoBindRange = 5;
+
+    private Integer clusterPort;
+
+    private Integer clusterStartPort;
+
+    private List<String> jvmArgs = new ArrayList<>();
+
+    private File cdsCache;
+
+    private Integer minHttpThreads;
+
+    private Integer maxHttpThreads;
+
+    private Boolean autoHttpThreads;
+
+    private String workload;
+
+    private Integer drainTimeout;
+
+    private ThreadPoolSizing httpThreads;
+
+    @TaskAction
+    public void runFleet() {
+        verifySetting();
+        httpThreads = ThreadPoolSizing.resolve(getMinHttpThreads(), getMaxHttpThreads(), getAutoHttpThreads(),
+                ThreadPoolSizing.Workload.of(getWorkload()), Runtime.getRuntime().availableProcessors());
+        getLogger().lifecycle("HTTP thread pool of each instance: {}", httpThreads);
+        final PayaraFleet fleet = new PayaraFleet(getHttpPort(), FleetProxy.Balancing.of(balancing), createMembers());
+        final StopServer stopServer;
+        try {
+            stopServer = new StopServer(getStopPort(), getStopCommand(), latch, describeSettings(), null);
+        } catch (IOException e) {
+            throw new GradleException("Fail to start StopServer", e);
+        }
+        Thread stopThread = new Thread(stopServer, "payara-fleet-stop-server");
+        stopThread.setDaemon(true);
+        stopThread.start();
+        getLogger().lifecycle("Starting {} payara-micro instances.", instances);
+        try {
+            fleet.start(getReadyTimeout(), TimeUnit.SECONDS);
+        } catch (IOException e) {
+            closeQuietly(stopServer);
+            throw new GradleException("Fail to start payara-micro fleet.", e);
+        } catch (InterruptedException e) {
+            closeQuietly(stopServer);
+            Thread.currentThread().interrupt();
+            throw new GradleException("Starting payara-micro fleet is interrupted.", e);
+        }
+        getLogger().lifecycle("Payara-micro fleet is ready on port {} in front of {}.", getHttpPort(), fleet.getBackends());
+
+        // daemon is true -> finish task as soon as the fleet is ready, and stop it when stop command comes
+        // daemon is false -> wait for stop command
+        Runnable keeper = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    LOG.debug("Payara-micro fleet is going to shutdown unexpectedly.", e);
+                    Thread.currentThread().interrupt();
+                } finally {
+                    fleet.shutdown();
+                    closeQuietly(stopServer);
+                }
+            }
+        };
+        if (getDaemon()) {
+            new Thread(keeper, "payara-fleet-keeper").start();
+        } else {
+            keeper.run();
+        }
+    }
+
+    private List<ForkedPayaraMicro> createMembers() {
+        List<ForkedPayaraMicro> members = new ArrayList<>(instances);
+        String project = getProject().getName();
+        List<String> args = new ArrayList<>(jvmArgs);
+        CdsArchive cds = CdsArchive.find(getCdsCache(), Collections.singletonList(getWar().getAbsoluteFile()));
+        if (cds != null) {
+            getLogger().lifecycle("Instances use AppCDS archive {}.", cds);
+            args.addAll(cds.runtimeJvmArgs());
+        }
+        for (int i = 0; i < instances; i++) {
+            File workDir = new File(getTemporaryDir(), "instance-" + i);
+            LaunchSpec spec = new LaunchSpec()
+                    .setHttpPort(getHttpPort() + 1 + i * autoBindRange)
+                    .setAutoBindHttp(true)
+                    .setAutoBindRange(autoBindRange)
+                    .setStopPort(getStopPort() + 1 + i)
+                    .setStopCommand(getStopCommand())
+                    .setSettings(String.format("fleet-member=%d,%s", i, describeSettings()))
+                    .setRootDir(new File(workDir, "root"))
+                    .setInstanceRootCache(getInstanceRootCache())
+                    .setInstanceName(project + "-" + i)
+                    .setNoCluster(false)
+                    .setReadinessPath(getReadinessPath())
+                    .setReadyTimeout(getReadyTimeout())
+                    .setDeploymentThreads(getDeploymentThreads())
+                    .setHttpThreads(httpThreads.getMin(), httpThreads.getMax())
+                    .setDrainTimeout(getDrainTimeout())
+                    .addDeployment(getWar());
+            if (clusterPort != null) {
+                spec.setClusterPort(clusterPort);
+            }
+            if (clusterStartPort != null) {
+                spec.setClusterStartPort(clusterStartPort);
+            }
+            members.add(new ForkedPayaraMicro(spec.getInstanceName(), spec, args, workDir));
+        }
+        return members;
+    }
+
+    private String describeSettings() {
+        return String.format("httpPort=%d,stopPort=%d,instances=%d", getHttpPort(), getStopPort(), instances);
+    }
+
+    /**
+     * check spec
+     * <ul>
+     *     <li>All the value except {@link #readinessPath}, {@link #clusterPort} and {@link #clusterStartPort} is not null.</li>
+     *     <li>{@link #war} exists.</li>
+     *     <li>{@link #instances}, {@link #autoBindRange}, {@link #readyTimeout} and {@link #deploymentThreads} are positive.</li>
+     *     <li>{@link #balancing} is {@code round-robin} or {@code least-connections}.</li>
+     *     <li>ports of the proxy and all instances are in the range and don't overlap each other.</li>
+     * </ul>
+     */
+    private void verifySetting() {
+        LOG.debug("httpPort -> {}", getHttpPort());
+        LOG.debug("stopPort -> {}", getStopPort());
+        LOG.debug("instances -> {}", instances);
+        LOG.debug("balancing -> {}", balancing);
+        LOG.debug("autoBindRange -> {}", autoBindRange);
+        LOG.debug("clusterPort -> {}", clusterPort);
+        LOG.debug("clusterStartPort -> {}", clusterStartPort);
+        LOG.debug("jvmArgs -> {}", jvmArgs);
+        if (getHttpPort() == null || getStopPort() == null || getStopCommand() == null || getDaemon() == null || getReadyTimeout() == null
+                || getDeploymentThreads() == null || instances == null || balancing == null || autoBindRange == null || jvmArgs == null) {
+            throw new InvalidUserDataException("There are null values in httpPort/stopPort/stopCommand/daemon/readyTimeout/deploymentThreads/instances/balancing/autoBindRange/jvmArgs.");
+        }
+        if (getMinHttpThreads() == null || getMaxHttpThreads() == null || getAutoHttpThreads() == null || getWorkload() == null) {
+            throw new InvalidUserDataException("There are null values in minHttpThreads/maxHttpThreads/autoHttpThreads/workload.");
+        }
+        if (getMinHttpThreads() < 0 || getMaxHttpThreads() < 0) {
+            throw new InvalidUserDataException("minHttpThreads and maxHttpThreads should be zero(payara-micro default) or positive value.");
+        }
+        if (getMinHttpThreads() > 0 && getMaxHttpThreads() > 0 && getMinHttpThreads() > getMaxHttpThreads()) {
+            throw new InvalidUserDataException("minHttpThreads should not be greater than maxHttpThreads.");
+        }
+        if (ThreadPoolSizing.Workload.of(getWorkload()) == null) {
+            throw new InvalidUserDataException(String.format("Unknown workload[%s]. Available values are cpu-bound and blocking-io.", getWorkload()));
+        }
+        if (getDrainTimeout() == null || getDrainTimeout() < 0) {
+            throw new InvalidUserDataException("drainTimeout should be zero or positive value.");
+        }
+        if (getWar() == null || !getWar().exists()) {
+            throw new InvalidUserDataException("Invalid configuration. Web archive file is not set.");
+        }
+        if (instances <= 0 || autoBindRange <= 0 || getReadyTimeout() <= 0 || getDeploymentThreads() <= 0) {
+            throw new InvalidUserDataException("instances, autoBindRange, readyTimeout and deploymentThreads should be positive value.");
+        }
+        if (getStopCommand().isEmpty()) {
+            throw new InvalidUserDataException("stopCommand should be non empty value.");
+        }
+        if (FleetProxy.Balancing.of(balancing) == null) {
+            throw new InvalidUserDataException(String.format("Unknown balancing[%s]. Available values are round-robin and least-connections.", balancing));
+        }
+        int lastHttpPort = getHttpPort() + instances * autoBindRange;
+        int lastStopPort = getStopPort() + instances;
+        portIsInRange("httpPort", getHttpPort());
+        portIsInRange("http port of the last instance", lastHttpPort);
+        portIsInRange("stopPort", getStopPort());
+        portIsInRange("stop port of the last instance", lastStopPort);
+        if (getHttpPort() <= lastStopPort && getStopPort() <= lastHttpPort) {
+            throw new InvalidUserDataException(String.format("http ports[%d - %d] and stop ports[%d - %d] of the fleet should not overlap.",
+                    getHttpPort(), lastHttpPort, getStopPort(), lastStopPort));
+        }
+    }
+
+    private static void portIsInRange(String name, int port) {
+        if (port < PayaraPlugin.MIN_PORT_NUMBER || PayaraPlugin.MAX_PORT_NUMBER < port) {
+            throw new InvalidUserDataException(String.format("%s is not in the range between %d and %d.", name, PayaraPlugin.MIN_PORT_NUMBER, PayaraPlugin.MAX_PORT_NUMBER));
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOG.debug("An error has occurred while closing {}.", closeable, e);
+        }
+    }
+
+    public Integer getHttpPort() {
+        return httpPort;
+    }
+
+    public void setHttpPort(Integer httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    public Integer getStopPort() {
+        return stopPort;
+    }
+
+    public void setStopPort(Integer stopPort) {
+        this.stopPort = stopPort;
+    }
+
+    public String getStopCommand() {
+        return stopCommand;
+    }
+
+    public void setStopCommand(String stopCommand) {
+        this.stopCommand = stopCommand;
+    }
+
+    public Boolean getDaemon() {
+        return daemon;
+    }
+
+    public void setDaemon(Boolean daemon) {
+        this.daemon = daemon;
+    }
+
+    public String getReadinessPath() {
+        return readinessPath;
+    }
+
+    public void setReadinessPath(String readinessPath) {
+        this.readinessPath = readinessPath;
+    }
+
+    public Integer getReadyTimeout() {
+        return readyTimeout;
+    }
+
+    public void setReadyTimeout(Integer readyTimeout) {
+        this.readyTimeout = readyTimeout;
+    }
+
+    public Integer getDeploymentThreads() {
+        return deploymentThreads;
+    }
+
+    public void setDeploymentThreads(Integer deploymentThreads) {
+        this.deploymentThreads = deploymentThreads;
+    }
+
+    public File getInstanceRootCache() {
+        return instanceRootCache;
+    }
+
+    public void setInstanceRootCache(File instanceRootCache) {
+        this.instanceRootCache = instanceRootCache;
+    }
+
+    public File getWar() {
+        return war;
+    }
+
+    public void setWar(File war) {
+        this.war = war;
+    }
+
+    public Integer getInstances() {
+        return instances;
+    }
+
+    public void setInstances(Integer instances) {
+        this.instances = instances;
+    }
+
+    public String getBalancing() {
+        return balancing;
+    }
+
+    public void setBalancing(String balancing) {
+        this.balancing = balancing;
+    }
+
+    public Integer getAutoBindRange() {
+        return autoBindRange;
+    }
+
+    public void setAutoBindRange(Integer autoBindRange) {
+        this.autoBindRange = autoBindRange;
+    }
+
+    public Integer getClusterPort() {
+        return clusterPort;
+    }
+
+    public void setClusterPort(Integer clusterPort) {
+        this.clusterPort = clusterPort;
+    }
+
+    public Integer getClusterStartPort() {
+        return clusterStartPort;
+    }
+
+    public void setClusterStartPort(Integer clusterStartPort) {
+        this.clusterStartPort = clusterStartPort;
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public void setJvmArgs(List<String> jvmArgs) {
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * @param args arguments for child JVMs.
+     */
+    public void jvmArgs(String... args) {
+        jvmArgs.addAll(Arrays.asList(args));
+    }
+
+    public Integer getMinHttpThreads() {
+        return minHttpThreads;
+    }
+
+    public void setMinHttpThreads(Integer minHttpThreads) {
+        this.minHttpThreads = minHttpThreads;
+    }
+
+    public Integer getMaxHttpThreads() {
+        return maxHttpThreads;
+    }
+
+    public void setMaxHttpThreads(Integer maxHttpThreads) {
+        this.maxHttpThreads = maxHttpThreads;
+    }
+
+    public Boolean getAutoHttpThreads() {
+        return autoHttpThreads;
+    }
+
+    public void setAutoHttpThreads(Boolean autoHttpThreads) {
+        this.autoHttpThreads = autoHttpThreads;
+    }
+
+    public String getWorkload() {
+        return workload;
+    }
+
+    public void setWorkload(String workload) {
+        this.workload = workload;
+    }
+
+    public Integer getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public void setDrainTimeout(Integer drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public File getCdsCache() {
+        return cdsCache;
+    }
+
+    public void setCdsCache(File cdsCache) {
+        this.cdsCache = cdsCache;
+    }
+}
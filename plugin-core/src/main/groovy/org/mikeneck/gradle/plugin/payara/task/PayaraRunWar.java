@@ -16,11 +16,13 @@
 package org.mikeneck.gradle.plugin.payara.task;
 
 import org.gradle.api.InvalidUserDataException;
-import org.mikeneck.gradle.plugin.payara.micro.AlternativePayaraMicro;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class PayaraRunWar extends AbstractPayaraTask {
 
@@ -32,6 +34,8 @@ public class PayaraRunWar extends AbstractPayaraTask {
 
     private File war;
 
+    private List<File> additionalWars = new ArrayList<>();
+
     @Override
     protected Logger getClassLogger() {
         return LOG;
@@ -39,14 +43,24 @@ public class PayaraRunWar extends AbstractPayaraTask {
 
     @Override
     public void validateConfiguration() {
-        if (war == null || !war.exists()) {
+        if (getWar() == null || !getWar().exists()) {
             throw new InvalidUserDataException("Invalid configuration. Web archive file is not set.");
         }
+        for (File additional : additionalWars) {
+            if (!additional.exists()) {
+                throw new InvalidUserDataException(String.format("Invalid configuration. Web archive file %s does not exist.", additional));
+            }
+        }
     }
 
     @Override
-    protected void mutateServer(AlternativePayaraMicro payaraMicro) {
-        payaraMicro.addDeployment(war.getAbsolutePath());
+    protected List<File> deploymentArchives() {
+        List<File> archives = new ArrayList<>(additionalWars.size() + 1);
+        archives.add(getWar().getAbsoluteFile());
+        for (File additional : additionalWars) {
+            archives.add(additional.getAbsoluteFile());
+        }
+        return archives;
     }
 
     public File getWar() {
@@ -56,4 +70,19 @@ public class PayaraRunWar extends AbstractPayaraTask {
     public void setWar(File war) {
         this.war = war;
     }
+
+    public List<File> getAdditionalWars() {
+        return additionalWars;
+    }
+
+    public void setAdditionalWars(List<File> additionalWars) {
+        this.additionalWars = additionalWars;
+    }
+
+    /**
+     * @param wars archives to be deployed along with {@link #war}.
+     */
+    public void additionalWar(File... wars) {
+        additionalWars.addAll(Arrays.asList(wars));
+    }
 }
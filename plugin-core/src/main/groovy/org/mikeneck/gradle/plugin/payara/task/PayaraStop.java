@@ -16,19 +16,25 @@
 package org.mikeneck.gradle.plugin.payara.task;
 
 import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.internal.ConventionTask;
 import org.gradle.api.tasks.TaskAction;
-import org.mikeneck.gradle.plugin.payara.PayaraPlugin;
-import org.mikeneck.gradle.plugin.payara.server.StopServer;
+import org.mikeneck.gradle.plugin.payara.micro.AllocatedPorts;
+import org.mikeneck.gradle.plugin.payara.server.ControlClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends stop command to payara-micro, and waits until it drains in-flight requests, shuts down and releases {@link #httpPort}.
+ * <p>
+ * Payara-micro started with allocated ports is found by {@link #portsFiles}, and its ports are given back to the registry after shutdown.
+ */
 public class PayaraStop extends ConventionTask {
 
     private static final Logger LOG = LoggerFactory.getLogger(PayaraStop.class);
@@ -41,33 +47,61 @@ public class PayaraStop extends ConventionTask {
 
     private String stopCommand;
 
+    private Integer httpPort;
+
+    private Integer timeout;
+
+    private List<File> portsFiles;
+
     @TaskAction
     public void stopPayara() {
-        String urlString = String.format("http://localhost:%s/", stopPort);
-        HttpURLConnection con = null;
+        if (getStopPort() == null || getStopCommand() == null || getHttpPort() == null || getTimeout() == null) {
+            throw new InvalidUserDataException("There are null values in stopPort/stopCommand/httpPort/timeout.");
+        }
+        List<File> files = getPortsFiles() == null ? Collections.<File>emptyList() : getPortsFiles();
+        boolean allocated = false;
+        for (File portsFile : files) {
+            AllocatedPorts ports;
+            try {
+                ports = AllocatedPorts.load(portsFile);
+            } catch (IOException e) {
+                throw new InvalidUserDataException(String.format("Fail to read ports file %s.", portsFile), e);
+            }
+            if (ports != null) {
+                allocated = true;
+                stop(ports.getStopPort(), ports.getHttpPort());
+                try {
+                    ports.release();
+                } catch (IOException e) {
+                    LOG.warn("Fail to release ports {}.", ports, e);
+                }
+                if (portsFile.isFile() && !portsFile.delete()) {
+                    LOG.warn("Fail to delete ports file {}.", portsFile);
+                }
+            }
+        }
+        if (!allocated) {
+            stop(getStopPort(), getHttpPort());
+        }
+    }
+
+    private void stop(int stopPort, int httpPort) {
+        ControlClient client = new ControlClient(stopPort, getStopCommand());
         try {
-            URL url = new URL(urlString);
-            con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod(PayaraPlugin.STOP_METHOD);
-            con.setDoOutput(true);
-            con.setDoInput(true);
-            OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream());
-            writer.append(stopCommand).flush();
-            int status = con.getResponseCode();
-            if (status != StopServer.OK) {
-                throw new GradleException("Cannot stop server.");
+            if (client.settings() == null) {
+                getLogger().lifecycle("No payara-micro is running on stopPort[{}].", stopPort);
+                return;
             }
-        } catch (MalformedURLException e) {
-            LOG.info("An exception occurred.", e);
-            throw new GradleException(String.format("Invalid stop server url[%s].", urlString));
+            client.stop();
         } catch (IOException e) {
             LOG.info("An exception occurred.", e);
             throw new GradleException("An error occurred while connecting to StopServer.", e);
-        } finally {
-            if (con != null) {
-                con.disconnect();
-            }
         }
+        long started = System.currentTimeMillis();
+        if (!client.awaitShutdown(httpPort, TimeUnit.SECONDS.toMillis(getTimeout()))) {
+            throw new GradleException(String.format("Payara-micro did not shutdown within %d seconds.", getTimeout()));
+        }
+        getLogger().lifecycle("Payara-micro on port {} is shut down in {} ms.", httpPort, System.currentTimeMillis() - started);
     }
 
     public Integer getStopPort() {
@@ -85,4 +119,37 @@ public class PayaraStop extends ConventionTask {
     public void setStopCommand(String stopCommand) {
         this.stopCommand = stopCommand;
     }
+
+    public Integer getHttpPort() {
+        return httpPort;
+    }
+
+    /**
+     * @param httpPort http port which should be released after shutdown.
+     */
+    public void setHttpPort(Integer httpPort) {
+        this.httpPort = httpPort;
+    }
+
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @param timeout seconds to wait for payara-micro to drain requests and shutdown.
+     */
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
+    public List<File> getPortsFiles() {
+        return portsFiles;
+    }
+
+    /**
+     * @param portsFiles ports files written by run tasks allocating ports, which are preferred to {@link #stopPort} and {@link #httpPort} if they exist.
+     */
+    public void setPortsFiles(List<File> portsFiles) {
+        this.portsFiles = portsFiles;
+    }
 }